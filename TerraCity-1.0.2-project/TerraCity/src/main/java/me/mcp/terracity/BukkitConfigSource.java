@@ -0,0 +1,46 @@
+package me.mcp.terracity;
+
+import me.mcp.terracity.core.ConfigSource;
+import me.mcp.terracity.core.TerraBlock;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.Locale;
+import java.util.Set;
+
+/** {@link ConfigSource} over a Bukkit configuration; block names are validated against {@link Material}. */
+final class BukkitConfigSource implements ConfigSource {
+
+    private final FileConfiguration config;
+
+    BukkitConfigSource(FileConfiguration config) {
+        this.config = config;
+    }
+
+    @Override
+    public int getInt(String path, int def) { return config.getInt(path, def); }
+
+    @Override
+    public double getDouble(String path, double def) { return config.getDouble(path, def); }
+
+    @Override
+    public boolean getBoolean(String path, boolean def) { return config.getBoolean(path, def); }
+
+    @Override
+    public String getString(String path, String def) { return config.getString(path, def); }
+
+    @Override
+    public Set<String> keys(String path) {
+        ConfigurationSection section = config.getConfigurationSection(path);
+        return (section == null) ? Set.of() : section.getKeys(false);
+    }
+
+    @Override
+    public TerraBlock getBlock(String path, TerraBlock fallback) {
+        String name = config.getString(path);
+        if (name == null) return fallback;
+        Material m = Material.matchMaterial(name.trim().toUpperCase(Locale.ROOT));
+        return (m == null || !m.isBlock()) ? fallback : TerraBlock.of(m.name());
+    }
+}
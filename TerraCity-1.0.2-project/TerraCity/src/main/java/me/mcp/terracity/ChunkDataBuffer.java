@@ -0,0 +1,94 @@
+package me.mcp.terracity;
+
+import me.mcp.terracity.core.BlockBuffer;
+import me.mcp.terracity.core.TerraBlock;
+import org.bukkit.Material;
+import org.bukkit.generator.ChunkGenerator;
+import org.bukkit.generator.WorldInfo;
+
+/**
+ * {@link BlockBuffer} view of Paper's {@link ChunkGenerator.ChunkData}. Blocks are translated
+ * through lookup tables indexed by {@link TerraBlock#id()} and {@link Material#ordinal()}.
+ * <p>
+ * The server's own noise runs before ours, so the data may hold its blocks anywhere up to the top
+ * of the dimension's noise range (see {@link #vanillaTop}). ChunkData has no heightmap, so that
+ * is as tight as {@link #foreignTop()} gets: surface passes still read down from there.
+ */
+final class ChunkDataBuffer implements BlockBuffer {
+
+    private static volatile Material[] toMaterial = new Material[0];
+    private static final TerraBlock[] toBlock = new TerraBlock[Material.values().length];
+
+    private final ChunkGenerator.ChunkData data;
+    private final int foreignTop;
+
+    ChunkDataBuffer(ChunkGenerator.ChunkData data, WorldInfo world) {
+        this.data = data;
+        this.foreignTop = Math.min(vanillaTop(world), data.getMaxHeight() - 1);
+    }
+
+    /**
+     * Highest y the server's noise can fill. The vanilla density functions slide to air at the top
+     * of their range: y 256 in the overworld, 128 in the nether and the end. A datapack that raises
+     * that ceiling is not detected; only {@code CUSTOM} environments use the full height.
+     */
+    static int vanillaTop(WorldInfo world) {
+        return switch (world.getEnvironment()) {
+            case NORMAL -> 255;
+            case NETHER, THE_END -> 127;
+            default -> world.getMaxHeight() - 1;
+        };
+    }
+
+    @Override public int minY() { return data.getMinHeight(); }
+
+    @Override public int maxY() { return data.getMaxHeight(); }
+
+    @Override public int foreignTop() { return foreignTop; }
+
+    @Override
+    public TerraBlock get(int x, int y, int z) {
+        return block(data.getType(x, y, z));
+    }
+
+    @Override
+    public void set(int x, int y, int z, TerraBlock block) {
+        data.setBlock(x, y, z, material(block));
+    }
+
+    @Override
+    public void setRegion(int xMin, int yMin, int zMin, int xMax, int yMax, int zMax, TerraBlock block) {
+        data.setRegion(xMin, yMin, zMin, xMax, yMax, zMax, material(block));
+    }
+
+    static Material material(TerraBlock block) {
+        Material[] table = toMaterial;
+        int id = block.id();
+        if (id < table.length) return table[id];
+        return grow(id)[id];
+    }
+
+    static TerraBlock block(Material m) {
+        TerraBlock b = toBlock[m.ordinal()];
+        if (b == null) {
+            b = TerraBlock.of(m.name());
+            toBlock[m.ordinal()] = b;
+        }
+        return b;
+    }
+
+    private static synchronized Material[] grow(int id) {
+        Material[] table = toMaterial;
+        if (id < table.length) return table;
+
+        int n = Math.max(id + 1, TerraBlock.count());
+        Material[] next = new Material[n];
+        System.arraycopy(table, 0, next, 0, table.length);
+        for (int i = table.length; i < n; i++) {
+            Material m = Material.getMaterial(TerraBlock.byId(i).name());
+            next[i] = (m == null) ? Material.AIR : m;
+        }
+        toMaterial = next;
+        return next;
+    }
+}
@@ -1,82 +1,84 @@
 package me.mcp.terracity;
 
+import me.mcp.terracity.core.TerraCityEngine;
+import me.mcp.terracity.core.TerraCitySettings;
 import org.bukkit.Material;
-import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.generator.BlockPopulator;
+import org.bukkit.generator.LimitedRegion;
+import org.bukkit.generator.WorldInfo;
 
 import java.util.Random;
 
 /**
  * Lightweight custom flora: places simple custom trees (palm, pine, jungle) based on temperature/humidity
- * and proximity to water. This runs after chunk generation.
+ * and proximity to water. This runs after chunk generation, through {@link LimitedRegion} with
+ * all reads and writes clipped to the region.
  */
 public class CustomFloraPopulator extends BlockPopulator {
 
-    private final TerraCityPlugin plugin;
-    private final TerrainSampler terrain;
+    private final TerraCityGenerator generator;
 
-    public CustomFloraPopulator(TerraCityPlugin plugin, TerrainSampler terrain) {
-        this.plugin = plugin;
-        this.terrain = terrain;
+    public CustomFloraPopulator(TerraCityGenerator generator) {
+        this.generator = generator;
     }
 
     @Override
-    public void populate(World world, Random random, org.bukkit.Chunk chunk) {
-        long seed = world.getSeed();
+    public void populate(WorldInfo worldInfo, Random random, int chunkX, int chunkZ, LimitedRegion region) {
+        long seed = worldInfo.getSeed();
 
-        double tScale = plugin.getConfig().getDouble("biomes.temperature-scale", 0.0023);
-        double hScale = plugin.getConfig().getDouble("biomes.humidity-scale", 0.0020);
+        TerraCityEngine engine = generator.engine(worldInfo);
+        TerraCitySettings.Flora flora = engine.getSettings().flora();
+        double tScale = engine.getSettings().biomes().temperatureScale();
+        double hScale = engine.getSettings().biomes().humidityScale();
 
-        int baseX = chunk.getX() << 4;
-        int baseZ = chunk.getZ() << 4;
+        int baseX = chunkX << 4;
+        int baseZ = chunkZ << 4;
 
-        int attempts = plugin.getConfig().getInt("flora.attempts-per-chunk", 4);
+        int attempts = flora.attemptsPerChunk();
         for (int i = 0; i < attempts; i++) {
             int x = baseX + random.nextInt(16);
             int z = baseZ + random.nextInt(16);
 
-            int y = world.getHighestBlockYAt(x, z);
-            if (y <= world.getMinHeight() + 2 || y >= world.getMaxHeight() - 10) continue;
+            int y = region.getHighestBlockYAt(x, z) + 1;
+            if (y <= worldInfo.getMinHeight() + 2 || y >= worldInfo.getMaxHeight() - 10) continue;
 
-            Block ground = world.getBlockAt(x, y - 1, z);
-            Material g = ground.getType();
+            Material g = type(region, x, y - 1, z);
 
-            double temp = terrain.temperature(seed, x, z, tScale);
-            double hum = terrain.humidity(seed, x, z, hScale);
+            double temp = engine.getTerrain().temperature(seed, x, z, tScale);
+            double hum = engine.getTerrain().humidity(seed, x, z, hScale);
 
             // Beaches: palm trees on sand near water
-            if ((g == Material.SAND || g == Material.SANDSTONE) && isNearWater(world, x, y, z, 6)) {
-                if (random.nextDouble() < plugin.getConfig().getDouble("flora.palm.chance", 0.45)) {
-                    placePalm(world, random, x, y, z);
+            if ((g == Material.SAND || g == Material.SANDSTONE) && isNearWater(worldInfo, region, x, y, z, 6)) {
+                if (random.nextDouble() < flora.palmChance()) {
+                    placePalm(region, random, x, y, z);
                     continue;
                 }
             }
 
             // Cold: pine/spruce
             if (temp < -0.25 && g == Material.GRASS_BLOCK) {
-                if (random.nextDouble() < plugin.getConfig().getDouble("flora.pine.chance", 0.30)) {
-                    placePine(world, random, x, y, z);
+                if (random.nextDouble() < flora.pineChance()) {
+                    placePine(region, random, x, y, z);
                     continue;
                 }
             }
 
             // Humid warm: jungle tree
             if (temp > 0.20 && hum > 0.35 && g == Material.GRASS_BLOCK) {
-                if (random.nextDouble() < plugin.getConfig().getDouble("flora.jungle.chance", 0.25)) {
-                    placeJungle(world, random, x, y, z);
+                if (random.nextDouble() < flora.jungleChance()) {
+                    placeJungle(region, random, x, y, z);
                 }
             }
         }
     }
 
-    private boolean isNearWater(World world, int x, int y, int z, int r) {
-        int minY = Math.max(world.getMinHeight(), y - 2);
-        int maxY = Math.min(world.getMaxHeight() - 1, y + 2);
+    private boolean isNearWater(WorldInfo worldInfo, LimitedRegion region, int x, int y, int z, int r) {
+        int minY = Math.max(worldInfo.getMinHeight(), y - 2);
+        int maxY = Math.min(worldInfo.getMaxHeight() - 1, y + 2);
         for (int dx = -r; dx <= r; dx++) {
             for (int dz = -r; dz <= r; dz++) {
                 for (int dy = minY; dy <= maxY; dy++) {
-                    Material m = world.getBlockAt(x + dx, dy, z + dz).getType();
+                    Material m = type(region, x + dx, dy, z + dz);
                     if (m == Material.WATER) return true;
                 }
             }
@@ -84,16 +86,15 @@ public class CustomFloraPopulator extends BlockPopulator {
         return false;
     }
 
-    private void placePalm(World world, Random random, int x, int y, int z) {
+    private void placePalm(LimitedRegion region, Random random, int x, int y, int z) {
         int h = 5 + random.nextInt(4);
         int lean = random.nextInt(3) - 1; // -1..1
         int lx = x;
         int lz = z;
 
         for (int i = 0; i < h; i++) {
-            Block b = world.getBlockAt(lx, y + i, lz);
-            if (!b.getType().isAir()) return;
-            b.setType(Material.JUNGLE_LOG, false);
+            if (!isAir(region, lx, y + i, lz)) return;
+            region.setType(lx, y + i, lz, Material.JUNGLE_LOG);
             if (i > 2) { lx += lean; lz += (lean == 0 ? (random.nextBoolean() ? 1 : -1) : 0); }
         }
 
@@ -102,19 +103,17 @@ public class CustomFloraPopulator extends BlockPopulator {
         for (int dx = -3; dx <= 3; dx++) {
             for (int dz = -3; dz <= 3; dz++) {
                 if (Math.abs(dx) + Math.abs(dz) > 4) continue;
-                Block b = world.getBlockAt(lx + dx, topY, lz + dz);
-                if (b.getType().isAir()) b.setType(Material.JUNGLE_LEAVES, false);
+                if (isAir(region, lx + dx, topY, lz + dz)) region.setType(lx + dx, topY, lz + dz, Material.JUNGLE_LEAVES);
             }
         }
-        world.getBlockAt(lx, topY + 1, lz).setType(Material.JUNGLE_LEAVES, false);
+        if (region.isInRegion(lx, topY + 1, lz)) region.setType(lx, topY + 1, lz, Material.JUNGLE_LEAVES);
     }
 
-    private void placePine(World world, Random random, int x, int y, int z) {
+    private void placePine(LimitedRegion region, Random random, int x, int y, int z) {
         int h = 8 + random.nextInt(6);
         for (int i = 0; i < h; i++) {
-            Block b = world.getBlockAt(x, y + i, z);
-            if (!b.getType().isAir()) return;
-            b.setType(Material.SPRUCE_LOG, false);
+            if (!isAir(region, x, y + i, z)) return;
+            region.setType(x, y + i, z, Material.SPRUCE_LOG);
         }
         int top = y + h - 1;
         int radius = 3;
@@ -123,30 +122,37 @@ public class CustomFloraPopulator extends BlockPopulator {
             for (int dx = -r; dx <= r; dx++) {
                 for (int dz = -r; dz <= r; dz++) {
                     if (Math.abs(dx) + Math.abs(dz) > r + 1) continue;
-                    Block b = world.getBlockAt(x + dx, yy, z + dz);
-                    if (b.getType().isAir()) b.setType(Material.SPRUCE_LEAVES, false);
+                    if (isAir(region, x + dx, yy, z + dz)) region.setType(x + dx, yy, z + dz, Material.SPRUCE_LEAVES);
                 }
             }
         }
-        world.getBlockAt(x, top + 1, z).setType(Material.SPRUCE_LEAVES, false);
+        if (region.isInRegion(x, top + 1, z)) region.setType(x, top + 1, z, Material.SPRUCE_LEAVES);
     }
 
-    private void placeJungle(World world, Random random, int x, int y, int z) {
+    private void placeJungle(LimitedRegion region, Random random, int x, int y, int z) {
         int h = 9 + random.nextInt(5);
         for (int i = 0; i < h; i++) {
-            Block b = world.getBlockAt(x, y + i, z);
-            if (!b.getType().isAir()) return;
-            b.setType(Material.JUNGLE_LOG, false);
+            if (!isAir(region, x, y + i, z)) return;
+            region.setType(x, y + i, z, Material.JUNGLE_LOG);
         }
         int top = y + h;
         for (int dx = -3; dx <= 3; dx++) {
             for (int dz = -3; dz <= 3; dz++) {
                 for (int dy = -2; dy <= 1; dy++) {
                     if (dx*dx + dz*dz + dy*dy > 12) continue;
-                    Block b = world.getBlockAt(x + dx, top + dy, z + dz);
-                    if (b.getType().isAir()) b.setType(Material.JUNGLE_LEAVES, false);
+                    if (isAir(region, x + dx, top + dy, z + dz)) region.setType(x + dx, top + dy, z + dz, Material.JUNGLE_LEAVES);
                 }
             }
         }
     }
+
+    /** Block type, or null outside the region. */
+    private static Material type(LimitedRegion region, int x, int y, int z) {
+        return region.isInRegion(x, y, z) ? region.getType(x, y, z) : null;
+    }
+
+    /** Out-of-region blocks count as occupied, so nothing is written there. */
+    private static boolean isAir(LimitedRegion region, int x, int y, int z) {
+        return region.isInRegion(x, y, z) && region.getType(x, y, z).isAir();
+    }
 }
@@ -1,87 +1,91 @@
 package me.mcp.terracity;
 
-import org.bukkit.Chunk;
+import me.mcp.terracity.core.BlockTemplate;
+import me.mcp.terracity.core.ColumnSample;
+import me.mcp.terracity.core.CoordHash;
+import me.mcp.terracity.core.GenerationMetrics;
+import me.mcp.terracity.core.TerraCityEngine;
+import me.mcp.terracity.core.TerraCitySettings;
+import me.mcp.terracity.core.TerraRandom;
+import me.mcp.terracity.core.TreeTemplates;
 import org.bukkit.Material;
 import org.bukkit.HeightMap;
-import org.bukkit.World;
 import org.bukkit.generator.BlockPopulator;
+import org.bukkit.generator.LimitedRegion;
+import org.bukkit.generator.WorldInfo;
 
+import java.util.List;
 import java.util.Random;
 
+/**
+ * Biome-aware custom trees. Runs on Paper's decoration stage through {@link LimitedRegion}, so
+ * it can run off the main thread. Shapes are precompiled {@link BlockTemplate}s; a tree whose
+ * bounding box leaves the region is skipped instead of loading a neighbour chunk.
+ */
 public class CustomTreePopulator extends BlockPopulator {
 
-    private final TerraCityPlugin plugin;
-    private final TerrainSampler terrain;
-    private final CityPlanner planner;
-
-    // config
-    private boolean enabled;
-    private int attemptsPerChunk;
-    private int minY;
-    private int maxY;
-
-    public CustomTreePopulator(TerraCityPlugin plugin, TerrainSampler terrain, CityPlanner planner) {
-        this.plugin = plugin;
-        this.terrain = terrain;
-        this.planner = planner;
-        reload();
-    }
+    private final TerraCityGenerator generator;
 
-    public void reload() {
-        var c = plugin.getConfig();
-        enabled = c.getBoolean("trees.enabled", true);
-        attemptsPerChunk = Math.max(0, c.getInt("trees.attempts-per-chunk", 10));
-        minY = c.getInt("trees.min-y", -64);
-        maxY = c.getInt("trees.max-y", 320);
+    public CustomTreePopulator(TerraCityGenerator generator) {
+        this.generator = generator;
     }
 
     @Override
-    public void populate(World world, Random random, Chunk chunk) {
-
-        plugin.getLogger().info("[TreePop] populate chunk " + chunk.getX() + "," + chunk.getZ());
+    public void populate(WorldInfo worldInfo, Random random, int chunkX, int chunkZ, LimitedRegion region) {
+        TerraCityEngine engine = generator.engine(worldInfo);
+        TerraCitySettings settings = engine.getSettings();
+        TerraCitySettings.Trees trees = settings.trees();
+        if (!trees.enabled()) return;
 
-        if (!enabled) return;
+        long t0 = System.nanoTime();
+        int placed = 0, rejected = 0;
 
-        final long seed = world.getSeed();
-        final int chunkX = chunk.getX();
-        final int chunkZ = chunk.getZ();
+        final long seed = worldInfo.getSeed();
 
-        Random r = new Random(mix(seed, chunkX, chunkZ, 0xC0FFEE));
+        TerraRandom r = new TerraRandom(settings.random(), mix(seed, chunkX, chunkZ, 0xC0FFEE));
+        ColumnSample cols = engine.getColumns().get(seed, chunkX, chunkZ);
 
-        for (int i = 0; i < attemptsPerChunk; i++) {
+        for (int i = 0; i < trees.attemptsPerChunk(); i++) {
             int lx = 2 + r.nextInt(12);
             int lz = 2 + r.nextInt(12);
 
             int x = (chunkX << 4) + lx;
             int z = (chunkZ << 4) + lz;
 
-            if (planner != null && planner.isEnabled()) {
-                CityPlanner.City city = planner.cityAt(seed, x, z, terrain, terrain.seaLevel());
-                if (city != null && planner.cityBlendFactor(city, x, z) > 0.15) continue;
+            if (settings.city().enabled()) {
+                if (cols.cityBlend(lx, lz) > 0.15) continue;
             }
 
-            int y = world.getHighestBlockYAt(x, z, HeightMap.MOTION_BLOCKING_NO_LEAVES);
+            int y = region.getHighestBlockYAt(x, z, HeightMap.MOTION_BLOCKING_NO_LEAVES) + 1;
 
-            if (y < minY || y >= maxY) continue;
+            if (y < trees.minY() || y >= trees.maxY()) continue;
 
-            Material ground = world.getBlockAt(x, y - 1, z).getType();
+            Material ground = type(region, x, y - 1, z);
             if (!isGoodGround(ground)) continue;
 
-            if (world.getBlockAt(x, y, z).getType() != Material.AIR) continue;
+            if (type(region, x, y, z) != Material.AIR) continue;
 
-            double tScale = plugin.getConfig().getDouble("biomes.temperature-scale", 0.0023);
-            double hScale = plugin.getConfig().getDouble("biomes.humidity-scale", 0.0020);
+            double temp = cols.temperature(lx, lz);
+            double hum  = cols.humidity(lx, lz);
 
-            double temp = terrain.temperature(seed, x, z, tScale);
-            double hum  = terrain.humidity(seed, x, z, hScale);
-
-            int sea = terrain.seaLevel();
+            int sea = settings.terrain().seaLevel();
             boolean nearSea = y <= sea + 3;
 
-            TreeType type = pickTreeType(r, temp, hum, y, nearSea);
-
-            generate(world, r, x, y, z, type);
+            boolean ok;
+            List<BlockTemplate> custom = settings.templates().trees();
+            if (!custom.isEmpty() && r.nextDouble() < trees.customChance()) {
+                ok = place(region, custom.get(r.nextInt(custom.size())), x, y, z);
+            } else {
+                TreeType type = pickTreeType(r, temp, hum, y, nearSea, settings.terrain().snowLine());
+                ok = generate(region, r, x, y, z, type);
+            }
+            if (ok) placed++; else rejected++;
         }
+
+        GenerationMetrics metrics = engine.getMetrics();
+        metrics.add(GenerationMetrics.Counter.TREES, placed);
+        metrics.add(GenerationMetrics.Counter.TREES_REJECTED, rejected);
+        metrics.time(GenerationMetrics.Stage.TREES, t0);
     }
 
 
@@ -97,9 +101,9 @@ public class CustomTreePopulator extends BlockPopulator {
 
     enum TreeType { OAK, BIRCH, PINE, PALM, SWAMP, MUSHROOM_RED, MUSHROOM_BROWN }
 
-    private TreeType pickTreeType(Random r, double temp, double hum, int y, boolean nearSea) {
+    private TreeType pickTreeType(TerraRandom r, double temp, double hum, int y, boolean nearSea, int snowLine) {
         // aturan gampang tapi hasilnya kerasa “biome-aware”
-        boolean cold = temp < -0.25 || y >= plugin.getConfig().getInt("terrain.snow-line", 150) - 10;
+        boolean cold = temp < -0.25 || y >= snowLine - 10;
         boolean dry  = hum < 0.10;
         boolean wet  = hum > 0.45;
 
@@ -130,198 +134,60 @@ public class CustomTreePopulator extends BlockPopulator {
         return TreeType.PINE;
     }
 
-    private void generate(World w, Random r, int x, int y, int z, TreeType type) {
-        switch (type) {
-            case OAK -> genOak(w, r, x, y, z);
-            case BIRCH -> genBirch(w, r, x, y, z);
-            case PINE -> genPine(w, r, x, y, z);
-            case PALM -> genPalm(w, r, x, y, z);
-            case SWAMP -> genSwamp(w, r, x, y, z);
-            case MUSHROOM_RED -> genMushroom(w, r, x, y, z, true);
-            case MUSHROOM_BROWN -> genMushroom(w, r, x, y, z, false);
-        }
-    }
-
-    // ===== TREE SHAPES =====
-
-    private void genOak(World w, Random r, int x, int y, int z) {
-        int h = 4 + r.nextInt(4);
-        if (!canPlace(w, x, y, z, 2, h + 3)) return;
-
-        setColumn(w, x, y, z, Material.OAK_LOG, h);
-
-        int top = y + h;
-        blobLeaves(w, x, top, z, 2, Material.OAK_LEAVES);
-        blobLeaves(w, x, top - 1, z, 3, Material.OAK_LEAVES);
-        blobLeaves(w, x, top + 1, z, 1, Material.OAK_LEAVES);
-    }
-
-    private void genBirch(World w, Random r, int x, int y, int z) {
-        int h = 5 + r.nextInt(4);
-        if (!canPlace(w, x, y, z, 2, h + 3)) return;
-
-        setColumn(w, x, y, z, Material.BIRCH_LOG, h);
-
-        int top = y + h;
-        blobLeaves(w, x, top, z, 2, Material.BIRCH_LEAVES);
-        blobLeaves(w, x, top - 1, z, 2, Material.BIRCH_LEAVES);
-        blobLeaves(w, x, top + 1, z, 1, Material.BIRCH_LEAVES);
-    }
-
-    private void genPine(World w, Random r, int x, int y, int z) {
-        int h = 7 + r.nextInt(6);
-        if (!canPlace(w, x, y, z, 3, h + 4)) return;
-
-        setColumn(w, x, y, z, Material.SPRUCE_LOG, h);
-
-        int top = y + h;
-        int layers = 5 + r.nextInt(3);
-        for (int i = 0; i < layers; i++) {
-            int ry = top - i;
-            int rad = Math.max(1, 3 - (i / 2));
-            discLeaves(w, x, ry, z, rad, Material.SPRUCE_LEAVES);
-        }
-        discLeaves(w, x, top + 1, z, 1, Material.SPRUCE_LEAVES);
-    }
-
-    private void genPalm(World w, Random r, int x, int y, int z) {
-        int h = 6 + r.nextInt(5);
-        if (!canPlace(w, x, y, z, 4, h + 4)) return;
-
-        // batang agak miring
-        int dx = r.nextInt(3) - 1;
-        int dz = r.nextInt(3) - 1;
-
-        int cx = x, cz = z;
-        for (int i = 0; i < h; i++) {
-            setIfAirOrLeaves(w, cx, y + i, cz, Material.JUNGLE_LOG);
-            if (i > 2 && r.nextDouble() < 0.35) { cx += dx; cz += dz; }
-        }
-
-        int topY = y + h;
-
-        // daun “kipas”
-        for (int a = 0; a < 6; a++) {
-            int fx = cx + (a % 3) - 1;
-            int fz = cz + (a / 3) - 1;
-            setIfAirOrLeaves(w, fx, topY, fz, Material.JUNGLE_LEAVES);
-        }
-        // fronds
-        lineLeaves(w, cx, topY, cz,  3, 0, Material.JUNGLE_LEAVES);
-        lineLeaves(w, cx, topY, cz, -3, 0, Material.JUNGLE_LEAVES);
-        lineLeaves(w, cx, topY, cz,  0, 3, Material.JUNGLE_LEAVES);
-        lineLeaves(w, cx, topY, cz,  0,-3, Material.JUNGLE_LEAVES);
-
-        // “kelapa” simple (cocoa) optional
-        // (hapus kelapa dulu, nanti kita bikin bener pake BlockData)
-    }
-
-    private void genSwamp(World w, Random r, int x, int y, int z) {
-        int h = 5 + r.nextInt(4);
-        if (!canPlace(w, x, y, z, 3, h + 4)) return;
-
-        setColumn(w, x, y, z, Material.OAK_LOG, h);
-
-        int top = y + h;
-        blobLeaves(w, x, top, z, 3, Material.OAK_LEAVES);
-        blobLeaves(w, x, top - 1, z, 3, Material.OAK_LEAVES);
-
-        // vines simple
-        if (r.nextDouble() < 0.60) {
-            for (int i = 0; i < 6; i++) {
-                int vx = x + r.nextInt(5) - 2;
-                int vz = z + r.nextInt(5) - 2;
-                int vy = top - r.nextInt(2);
-                for (int d = 0; d < 4; d++) {
-                    if (w.getBlockAt(vx, vy - d, vz).getType() == Material.AIR)
-                        w.getBlockAt(vx, vy - d, vz).setType(Material.VINE, false);
-                }
+    private boolean generate(LimitedRegion w, TerraRandom r, int x, int y, int z, TreeType type) {
+        BlockTemplate t = switch (type) {
+            case OAK -> TreeTemplates.oak(4 + r.nextInt(4));
+            case BIRCH -> TreeTemplates.birch(5 + r.nextInt(4));
+            case PINE -> {
+                int h = 7 + r.nextInt(6);
+                yield TreeTemplates.pine(h, 5 + r.nextInt(3));
             }
-        }
-    }
-
-    private void genMushroom(World w, Random r, int x, int y, int z, boolean red) {
-        int h = 4 + r.nextInt(3);
-        int capR = 3 + r.nextInt(2);
-        if (!canPlace(w, x, y, z, capR + 1, h + 6)) return;
-
-        setColumn(w, x, y, z, Material.MUSHROOM_STEM, h);
-
-        int top = y + h;
-        Material cap = red ? Material.RED_MUSHROOM_BLOCK : Material.BROWN_MUSHROOM_BLOCK;
-
-        for (int dx = -capR; dx <= capR; dx++) {
-            for (int dz = -capR; dz <= capR; dz++) {
-                int ad = Math.abs(dx) + Math.abs(dz);
-                if (ad > capR + 1) continue;
-                setIfAirOrLeaves(w, x + dx, top, z + dz, cap);
-                if (ad <= capR - 1) setIfAirOrLeaves(w, x + dx, top + 1, z + dz, cap);
+            case PALM -> {
+                int h = 6 + r.nextInt(5);
+                int dx = r.nextInt(3) - 1;
+                int dz = r.nextInt(3) - 1;
+                yield TreeTemplates.palm(h, dx, dz, r.nextInt(TreeTemplates.PALM_VARIANTS));
             }
-        }
-    }
-
-    // ===== helpers =====
-
-    private boolean canPlace(World w, int x, int y, int z, int radius, int height) {
-        for (int dy = 0; dy <= height; dy++) {
-            for (int dx = -radius; dx <= radius; dx++) {
-                for (int dz = -radius; dz <= radius; dz++) {
-                    Material m = w.getBlockAt(x + dx, y + dy, z + dz).getType();
-                    if (m != Material.AIR && !m.name().endsWith("_LEAVES") && m != Material.VINE) return false;
-                }
+            case SWAMP -> {
+                int h = 5 + r.nextInt(4);
+                yield TreeTemplates.swamp(h, r.nextDouble() < 0.60 ? 1 + r.nextInt(TreeTemplates.VINE_VARIANTS) : 0);
             }
-        }
-        return true;
-    }
-
-    private void setColumn(World w, int x, int y, int z, Material mat, int h) {
-        for (int i = 0; i < h; i++) w.getBlockAt(x, y + i, z).setType(mat, false);
-    }
-
-    private void blobLeaves(World w, int x, int y, int z, int r, Material leaves) {
-        for (int dx = -r; dx <= r; dx++) {
-            for (int dz = -r; dz <= r; dz++) {
-                for (int dy = -1; dy <= 1; dy++) {
-                    double d = Math.sqrt(dx*dx + dz*dz) + Math.abs(dy)*0.6;
-                    if (d <= r + 0.15) setIfAirOrLeaves(w, x + dx, y + dy, z + dz, leaves);
-                }
+            case MUSHROOM_RED, MUSHROOM_BROWN -> {
+                int h = 4 + r.nextInt(3);
+                yield TreeTemplates.mushroom(h, 3 + r.nextInt(2), type == TreeType.MUSHROOM_RED);
             }
+        };
+        return place(w, t, x, y, z);
+    }
+
+    /**
+     * Places {@code t} with its origin at (x, y, z) if its bounding box lies inside the region and
+     * every cell it covers is air, leaves or vine; otherwise places nothing.
+     */
+    static boolean place(LimitedRegion w, BlockTemplate t, int x, int y, int z) {
+        if (!w.isInRegion(x + t.minX(), y + t.minY(), z + t.minZ())
+                || !w.isInRegion(x + t.maxX(), y + t.maxY(), z + t.maxZ())) return false;
+
+        int n = t.size();
+        for (int i = 0; i < n; i++) {
+            long c = t.cell(i);
+            Material cur = w.getType(x + BlockTemplate.dx(c), y + BlockTemplate.dy(c), z + BlockTemplate.dz(c));
+            if (!ChunkDataBuffer.block(cur).replaceable()) return false;
         }
-    }
-
-    private void discLeaves(World w, int x, int y, int z, int r, Material leaves) {
-        for (int dx = -r; dx <= r; dx++) {
-            for (int dz = -r; dz <= r; dz++) {
-                if (dx*dx + dz*dz <= r*r) setIfAirOrLeaves(w, x + dx, y, z + dz, leaves);
-            }
-        }
-    }
-
-    private void lineLeaves(World w, int x, int y, int z, int dx, int dz, Material leaves) {
-        int steps = Math.max(Math.abs(dx), Math.abs(dz));
-        int sx = Integer.compare(dx, 0);
-        int sz = Integer.compare(dz, 0);
-        int cx = x, cz = z;
-        for (int i = 0; i < steps; i++) {
-            cx += sx;
-            cz += sz;
-            setIfAirOrLeaves(w, cx, y, cz, leaves);
-            if (i > 1) setIfAirOrLeaves(w, cx, y - 1, cz, leaves);
+        for (int i = 0; i < n; i++) {
+            long c = t.cell(i);
+            w.setType(x + BlockTemplate.dx(c), y + BlockTemplate.dy(c), z + BlockTemplate.dz(c),
+                    ChunkDataBuffer.material(BlockTemplate.block(c)));
         }
+        return true;
     }
 
-    private void setIfAirOrLeaves(World w, int x, int y, int z, Material m) {
-        Material cur = w.getBlockAt(x, y, z).getType();
-        if (cur == Material.AIR || cur.name().endsWith("_LEAVES") || cur == Material.VINE)
-            w.getBlockAt(x, y, z).setType(m, false);
+    /** Block type, or null outside the region (so it never matches AIR or good ground). */
+    private static Material type(LimitedRegion w, int x, int y, int z) {
+        return w.isInRegion(x, y, z) ? w.getType(x, y, z) : null;
     }
 
     private static long mix(long seed, int x, int z, int salt) {
-        long h = seed ^ (long)salt;
-        h ^= (long)x * 0x9E3779B97F4A7C15L;
-        h ^= (long)z * 0xC2B2AE3D27D4EB4FL;
-        h *= 0x165667B19E3779F9L;
-        h ^= (h >>> 32);
-        return h;
+        return CoordHash.mix(seed ^ (long)salt, x, z);
     }
 }
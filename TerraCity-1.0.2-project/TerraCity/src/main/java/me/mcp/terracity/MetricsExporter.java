@@ -0,0 +1,107 @@
+package me.mcp.terracity;
+
+import com.sun.net.httpserver.HttpServer;
+import me.mcp.terracity.core.CacheStats;
+import me.mcp.terracity.core.GenerationMetrics;
+import me.mcp.terracity.core.TerraCityEngine;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Optional outputs for the generator's metrics: a Prometheus text endpoint on a local port
+ * and/or a CSV row appended to {@code plugins/TerraCity/metrics.csv} at a fixed interval.
+ * Both are off by default and are restarted from config on {@code /terracity reload}.
+ */
+public class MetricsExporter {
+
+    private final TerraCityPlugin plugin;
+    private final TerraCityGenerator generator;
+
+    private HttpServer http;
+    private ExecutorService httpThread;
+    private BukkitTask csvTask;
+
+    public MetricsExporter(TerraCityPlugin plugin, TerraCityGenerator generator) {
+        this.plugin = plugin;
+        this.generator = generator;
+        reload();
+    }
+
+    public void reload() {
+        shutdown();
+        FileConfiguration c = plugin.getConfig();
+
+        if (c.getBoolean("metrics.prometheus.enabled", false)) {
+            String bind = c.getString("metrics.prometheus.bind", "127.0.0.1");
+            int port = c.getInt("metrics.prometheus.port", 9464);
+            try {
+                http = HttpServer.create(new InetSocketAddress(bind, port), 0);
+                http.createContext("/metrics", ex -> {
+                    TerraCityEngine engine = generator.getEngine();
+                    byte[] body = engine.getMetrics().prometheus(engine.cacheStats()).getBytes(StandardCharsets.UTF_8);
+                    ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                    ex.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = ex.getResponseBody()) {
+                        out.write(body);
+                    }
+                });
+                httpThread = Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "TerraCity-metrics");
+                    t.setDaemon(true);
+                    return t;
+                });
+                http.setExecutor(httpThread);
+                http.start();
+                plugin.getLogger().info("[Metrics] Prometheus endpoint on http://" + bind + ":" + port + "/metrics");
+            } catch (IOException | IllegalArgumentException e) {
+                http = null;
+                plugin.getLogger().warning("[Metrics] Could not bind " + bind + ":" + port + ": " + e.getMessage());
+            }
+        }
+
+        if (c.getBoolean("metrics.csv.enabled", false)) {
+            File file = new File(plugin.getDataFolder(), c.getString("metrics.csv.file", "metrics.csv"));
+            long period = Math.max(1, c.getInt("metrics.csv.interval-seconds", 60)) * 20L;
+            csvTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> appendCsv(file), period, period);
+        }
+    }
+
+    private void appendCsv(File file) {
+        TerraCityEngine engine = generator.getEngine();
+        List<CacheStats> caches = engine.cacheStats();
+        boolean header = !file.exists();
+        try (Writer w = new FileWriter(file, StandardCharsets.UTF_8, true)) {
+            if (header) w.write(GenerationMetrics.csvHeader(caches) + "\n");
+            w.write(engine.getMetrics().csvRow(caches) + "\n");
+        } catch (IOException e) {
+            plugin.getLogger().warning("[Metrics] Could not write " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    public void shutdown() {
+        if (http != null) {
+            http.stop(0);
+            http = null;
+        }
+        if (httpThread != null) {
+            httpThread.shutdownNow();
+            httpThread = null;
+        }
+        if (csvTask != null) {
+            csvTask.cancel();
+            csvTask = null;
+        }
+    }
+}
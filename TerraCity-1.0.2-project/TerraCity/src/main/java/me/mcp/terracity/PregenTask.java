@@ -0,0 +1,259 @@
+package me.mcp.terracity;
+
+import org.bukkit.World;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * One world's pregeneration job: walks a square spiral of chunks outward from a center chunk,
+ * keeping up to {@code workers} async chunk loads in flight. Driven from the main thread by
+ * {@link Pregenerator}; progress is stored as the lowest spiral index not yet completed plus
+ * the indices below it whose loads failed. Failed chunks are retried after the spiral, up to
+ * {@link #RETRY_ROUNDS} times; if some still fail the task pauses instead of finishing.
+ */
+public class PregenTask {
+
+    public enum State { RUNNING, PAUSED, DONE, CANCELLED }
+
+    static final int RETRY_ROUNDS = 3;
+
+    private final TerraCityPlugin plugin;
+    private final File file;
+
+    private final String worldName;
+    private final int centerX;
+    private final int centerZ;
+    private final int radiusChunks;
+    private final long total;
+    private int workers;
+
+    private volatile State state = State.RUNNING;
+    private long nextIndex;
+    private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+    // Indices whose last load failed; retries run after the spiral and aren't in inFlight
+    private final ConcurrentSkipListSet<Long> failed = new ConcurrentSkipListSet<>();
+    private final Set<Long> retrying = ConcurrentHashMap.newKeySet();
+    private final ArrayDeque<Long> retryQueue = new ArrayDeque<>();
+    private int retryRound;
+    private final AtomicLong generated = new AtomicLong();
+    private long skipped;
+    private long throttledTicks;
+
+    // throughput window
+    private long windowNanos = System.nanoTime();
+    private long windowDone;
+    private double chunksPerSecond;
+
+    PregenTask(TerraCityPlugin plugin, File file, String worldName, int centerX, int centerZ, int radiusChunks, int workers, long startIndex) {
+        this.plugin = plugin;
+        this.file = file;
+        this.worldName = worldName;
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.radiusChunks = radiusChunks;
+        this.total = (2L * radiusChunks + 1) * (2L * radiusChunks + 1);
+        this.workers = Math.max(1, workers);
+        this.nextIndex = Math.max(0, Math.min(total, startIndex));
+        this.windowDone = nextIndex;
+    }
+
+    public String worldName() { return worldName; }
+    public int radiusChunks() { return radiusChunks; }
+    public State state() { return state; }
+    public long total() { return total; }
+    public int workers() { return workers; }
+    public double chunksPerSecond() { return chunksPerSecond; }
+    public long generated() { return generated.get(); }
+    public long skipped() { return skipped; }
+    public long failed() { return failed.size(); }
+    public long throttledTicks() { return throttledTicks; }
+
+    /** Chunks finished so far (everything below the lowest in-flight index, less failed loads). */
+    public long done() {
+        long reached = reached();
+        return reached - failed.headSet(reached).size();
+    }
+
+    // Lowest spiral index not yet completed or failed
+    private long reached() {
+        Long low = inFlight.isEmpty() ? null : inFlight.first();
+        return (low == null) ? nextIndex : low;
+    }
+
+    public double progress() { return total == 0 ? 1.0 : done() / (double) total; }
+
+    /** Estimated seconds remaining at the current rate, or -1 when unknown. */
+    public long etaSeconds() {
+        if (chunksPerSecond <= 0.0) return -1;
+        return (long) Math.ceil((total - done()) / chunksPerSecond);
+    }
+
+    void setWorkers(int workers) { this.workers = Math.max(1, workers); }
+
+    void pause() { if (state == State.RUNNING) state = State.PAUSED; }
+
+    void resume() {
+        if (state != State.PAUSED) return;
+        state = State.RUNNING;
+        retryRound = 0;
+    }
+
+    void cancel() { state = State.CANCELLED; }
+
+    /**
+     * Submits new chunk loads for this tick. {@code overloaded} means the server is over its
+     * MSPT/TPS budget: nothing new is submitted and in-flight loads are left to drain.
+     */
+    void tick(World world, boolean overloaded) {
+        if (state != State.RUNNING) return;
+
+        if (overloaded) {
+            throttledTicks++;
+            return;
+        }
+
+        // Bound the isChunkGenerated() probes per tick so a fully generated area can't stall a tick.
+        int probes = workers * 8;
+        int[] c = new int[2];
+        while (inFlight.size() + retrying.size() < workers && probes-- > 0) {
+            boolean retry = nextIndex >= total;
+            if (retry && retryQueue.isEmpty()) break;
+            long index = retry ? retryQueue.poll() : nextIndex++;
+            spiral(index, c);
+            int cx = centerX + c[0];
+            int cz = centerZ + c[1];
+
+            if (world.isChunkGenerated(cx, cz)) {
+                skipped++;
+                failed.remove(index);
+                continue;
+            }
+
+            (retry ? retrying : inFlight).add(index);
+            world.getChunkAtAsync(cx, cz, true).whenComplete((chunk, ex) -> {
+                // Mark the failure before the index leaves flight, so done() never counts it
+                if (ex != null || chunk == null) {
+                    failed.add(index);
+                } else {
+                    failed.remove(index);
+                    generated.incrementAndGet();
+                }
+                inFlight.remove(index);
+                retrying.remove(index);
+            });
+        }
+
+        if (nextIndex < total || !inFlight.isEmpty() || !retrying.isEmpty() || !retryQueue.isEmpty()) return;
+        if (failed.isEmpty()) {
+            state = State.DONE;
+        } else if (retryRound < RETRY_ROUNDS) {
+            retryRound++;
+            retryQueue.addAll(failed);
+        } else {
+            state = State.PAUSED;
+            plugin.getLogger().warning("[Pregen] " + worldName + ": " + failed.size() + " chunks still failed after "
+                    + RETRY_ROUNDS + " retries; paused. /terracity pregen resume " + worldName + " retries them.");
+        }
+    }
+
+    /** Recomputes chunks/s over a window of at least {@code minNanos}. */
+    void sampleRate(long minNanos) {
+        long now = System.nanoTime();
+        long elapsed = now - windowNanos;
+        if (elapsed < minNanos) return;
+        long d = done();
+        chunksPerSecond = (d - windowDone) / (elapsed / 1e9);
+        windowNanos = now;
+        windowDone = d;
+    }
+
+    String summary() {
+        long eta = etaSeconds();
+        return String.format(Locale.ROOT, "%s: %s %d/%d chunks (%.1f%%), %.1f chunks/s, ETA %s, generated %d, skipped %d, failed %d, throttled %d ticks",
+                worldName, state.name().toLowerCase(Locale.ROOT), done(), total, progress() * 100.0,
+                chunksPerSecond, (eta < 0) ? "?" : formatDuration(eta),
+                generated(), skipped, failed(), throttledTicks);
+    }
+
+    void save() {
+        YamlConfiguration y = new YamlConfiguration();
+        y.set("world", worldName);
+        y.set("center-x", centerX);
+        y.set("center-z", centerZ);
+        y.set("radius-chunks", radiusChunks);
+        y.set("workers", workers);
+        y.set("index", reached());
+        y.set("failed", new ArrayList<>(failed));
+        y.set("state", state.name());
+        try {
+            File dir = file.getParentFile();
+            if (dir != null && !dir.exists() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+            y.save(file);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not save pregen progress for " + worldName, e);
+        }
+    }
+
+    void deleteFile() {
+        if (file.exists() && !file.delete()) {
+            plugin.getLogger().warning("Could not delete " + file);
+        }
+    }
+
+    static PregenTask load(TerraCityPlugin plugin, File file) {
+        YamlConfiguration y = YamlConfiguration.loadConfiguration(file);
+        String world = y.getString("world");
+        if (world == null) return null;
+
+        PregenTask t = new PregenTask(plugin, file, world,
+                y.getInt("center-x", 0), y.getInt("center-z", 0),
+                Math.max(0, y.getInt("radius-chunks", 0)),
+                y.getInt("workers", 1),
+                y.getLong("index", 0L));
+        t.failed.addAll(y.getLongList("failed"));
+        t.windowDone = t.done();
+        if ("PAUSED".equals(y.getString("state"))) t.state = State.PAUSED;
+        return t;
+    }
+
+    /** Square spiral: index 0 is the center, ring n covers indices (2n-1)^2 .. (2n+1)^2-1. */
+    static void spiral(long index, int[] out) {
+        if (index <= 0) {
+            out[0] = 0;
+            out[1] = 0;
+            return;
+        }
+        long n = (long) ((Math.sqrt((double) index) + 1.0) / 2.0);
+        while ((2 * n - 1) * (2 * n - 1) > index) n--;
+        while ((2 * n + 1) * (2 * n + 1) <= index) n++;
+
+        long side = 2 * n;
+        long t = index - (2 * n - 1) * (2 * n - 1);
+        long x, z;
+        if (t < side)          { x = n;                      z = -n + 1 + t; }
+        else if (t < 2 * side) { x = n - 1 - (t - side);     z = n; }
+        else if (t < 3 * side) { x = -n;                     z = n - 1 - (t - 2 * side); }
+        else                   { x = -n + 1 + (t - 3 * side); z = -n; }
+        out[0] = (int) x;
+        out[1] = (int) z;
+    }
+
+    static String formatDuration(long seconds) {
+        long h = seconds / 3600;
+        long m = (seconds % 3600) / 60;
+        long s = seconds % 60;
+        if (h > 0) return String.format(Locale.ROOT, "%dh%02dm", h, m);
+        if (m > 0) return String.format(Locale.ROOT, "%dm%02ds", m, s);
+        return s + "s";
+    }
+}
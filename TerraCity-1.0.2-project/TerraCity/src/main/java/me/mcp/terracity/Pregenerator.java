@@ -0,0 +1,201 @@
+package me.mcp.terracity;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs {@link PregenTask}s using Paper's async chunk loading. A single main-thread timer feeds
+ * every task each tick, throttling when the server's MSPT/TPS leave no headroom, and
+ * periodically saves progress to {@code plugins/TerraCity/pregen/<world>.yml}.
+ */
+public class Pregenerator {
+
+    private final TerraCityPlugin plugin;
+    private final File folder;
+    private final Map<String, PregenTask> tasks = new LinkedHashMap<>();
+
+    private BukkitTask ticker;
+    private long ticks;
+
+    private int defaultWorkers;
+    private double maxMspt;
+    private double minTps;
+    private int saveIntervalTicks;
+    private int logIntervalTicks;
+
+    public Pregenerator(TerraCityPlugin plugin) {
+        this.plugin = plugin;
+        this.folder = new File(plugin.getDataFolder(), "pregen");
+        reload();
+    }
+
+    public void reload() {
+        FileConfiguration c = plugin.getConfig();
+        int w = c.getInt("pregen.workers", 0);
+        defaultWorkers = (w <= 0) ? Runtime.getRuntime().availableProcessors() : w;
+        maxMspt = c.getDouble("pregen.max-mspt", 45.0);
+        minTps = c.getDouble("pregen.min-tps", 18.0);
+        saveIntervalTicks = Math.max(20, c.getInt("pregen.save-interval-seconds", 30) * 20);
+        logIntervalTicks = Math.max(0, c.getInt("pregen.log-interval-seconds", 30) * 20);
+    }
+
+    public Collection<PregenTask> tasks() { return tasks.values(); }
+
+    public PregenTask task(String worldName) { return tasks.get(key(worldName)); }
+
+    /**
+     * Starts pregeneration around chunk (0, 0). If progress for the same radius was saved
+     * earlier it continues from there instead of starting over.
+     */
+    public PregenTask start(World world, int radiusBlocks, int workers) {
+        int radiusChunks = Math.max(0, (radiusBlocks + 15) >> 4);
+        int w = (workers > 0) ? workers : defaultWorkers;
+
+        PregenTask existing = tasks.get(key(world.getName()));
+        if (existing != null && existing.radiusChunks() == radiusChunks && existing.state() != PregenTask.State.CANCELLED) {
+            existing.setWorkers(w);
+            existing.resume();
+            existing.save();
+            ensureTicker();
+            return existing;
+        }
+        if (existing != null) existing.cancel();
+
+        PregenTask t = null;
+        File f = file(world.getName());
+        if (f.exists()) {
+            PregenTask saved = PregenTask.load(plugin, f);
+            if (saved != null && saved.radiusChunks() == radiusChunks) {
+                t = saved;
+                t.setWorkers(w);
+                t.resume();
+            }
+        }
+        if (t == null) t = new PregenTask(plugin, f, world.getName(), 0, 0, radiusChunks, w, 0);
+
+        tasks.put(key(world.getName()), t);
+        t.save();
+        ensureTicker();
+        return t;
+    }
+
+    /** Resumes a paused or saved task. Returns null if there is nothing to resume. */
+    public PregenTask resume(String worldName) {
+        PregenTask t = tasks.get(key(worldName));
+        if (t == null) {
+            File f = file(worldName);
+            if (!f.exists()) return null;
+            t = PregenTask.load(plugin, f);
+            if (t == null) return null;
+            tasks.put(key(worldName), t);
+        }
+        t.resume();
+        t.save();
+        ensureTicker();
+        return t;
+    }
+
+    public PregenTask pause(String worldName) {
+        PregenTask t = tasks.get(key(worldName));
+        if (t == null) return null;
+        t.pause();
+        t.save();
+        return t;
+    }
+
+    public PregenTask cancel(String worldName) {
+        PregenTask t = tasks.remove(key(worldName));
+        if (t != null) t.cancel();
+        File f = file(worldName);
+        if (f.exists() && !f.delete()) plugin.getLogger().warning("Could not delete " + f);
+        return t;
+    }
+
+    /** Picks up tasks that were running when the server stopped. Call once worlds are loaded. */
+    public void resumeSaved() {
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(".yml"));
+        if (files == null) return;
+        for (File f : files) {
+            PregenTask t = PregenTask.load(plugin, f);
+            if (t == null || tasks.containsKey(key(t.worldName()))) continue;
+            if (Bukkit.getWorld(t.worldName()) == null) continue;
+
+            tasks.put(key(t.worldName()), t);
+            plugin.getLogger().info("[Pregen] Restored " + t.summary());
+        }
+        if (!tasks.isEmpty()) ensureTicker();
+    }
+
+    public void shutdown() {
+        for (PregenTask t : tasks.values()) t.save();
+        tasks.clear();
+        if (ticker != null) {
+            ticker.cancel();
+            ticker = null;
+        }
+    }
+
+    private void ensureTicker() {
+        if (ticker == null) ticker = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    private void tick() {
+        ticks++;
+        boolean overloaded = Bukkit.getAverageTickTime() > maxMspt || Bukkit.getTPS()[0] < minTps;
+
+        Iterator<PregenTask> it = tasks.values().iterator();
+        while (it.hasNext()) {
+            PregenTask t = it.next();
+            World world = Bukkit.getWorld(t.worldName());
+            if (world == null) {
+                t.pause();
+                continue;
+            }
+
+            t.tick(world, overloaded);
+            t.sampleRate(10_000_000_000L);
+
+            if (t.state() == PregenTask.State.DONE) {
+                plugin.getLogger().info("[Pregen] Finished " + t.summary());
+                t.deleteFile();
+                it.remove();
+                continue;
+            }
+            if (ticks % saveIntervalTicks == 0) t.save();
+            if (logIntervalTicks > 0 && ticks % logIntervalTicks == 0 && t.state() == PregenTask.State.RUNNING) {
+                plugin.getLogger().info("[Pregen] " + t.summary());
+            }
+        }
+
+        if (tasks.isEmpty() && ticker != null) {
+            ticker.cancel();
+            ticker = null;
+        }
+    }
+
+    List<String> savedWorlds() {
+        List<String> out = new ArrayList<>();
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(".yml"));
+        if (files != null) for (File f : files) out.add(f.getName().substring(0, f.getName().length() - 4));
+        return out;
+    }
+
+    private File file(String worldName) {
+        return new File(folder, worldName + ".yml");
+    }
+
+    private static String key(String worldName) {
+        return worldName.toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,6 +1,17 @@
 package me.mcp.terracity;
 
+import me.mcp.terracity.core.CacheStats;
+import me.mcp.terracity.core.GenerationMetrics;
+import me.mcp.terracity.core.Histogram;
+import me.mcp.terracity.core.LatticeFidelity;
+import me.mcp.terracity.core.NoiseEngine;
+import me.mcp.terracity.core.RegionConsistency;
+import me.mcp.terracity.core.TerraCityEngine;
+import me.mcp.terracity.core.TemplateSet;
+import me.mcp.terracity.core.TerraCitySettings;
+import me.mcp.terracity.core.TerrainSampler;
 import org.bukkit.Bukkit;
+import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.WorldCreator;
 import org.bukkit.command.Command;
@@ -8,33 +19,163 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabExecutor;
 import org.bukkit.generator.BiomeProvider;
 import org.bukkit.generator.ChunkGenerator;
+import org.bukkit.generator.WorldInfo;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
 import java.util.*;
 
 public class TerraCityPlugin extends JavaPlugin implements TabExecutor {
 
     private TerraCityGenerator generator;
     private TerraCityBiomeProvider biomeProvider;
+    private Pregenerator pregen;
+    private MetricsExporter metrics;
 
     @Override
     public void onEnable() {
         saveDefaultConfig();
         reloadLocal();
+        pregen = new Pregenerator(this);
+        metrics = new MetricsExporter(this, generator);
 
         Objects.requireNonNull(getCommand("terracity")).setExecutor(this);
         Objects.requireNonNull(getCommand("terracity")).setTabCompleter(this);
 
+        // First tick runs after worlds have loaded
+        Bukkit.getScheduler().runTask(this, () -> {
+            checkNoiseSeeds(null);
+            pregen.resumeSaved();
+        });
+
         getLogger().info("TerraCity enabled (Paper/Spigot 1.21.1).");
     }
 
+    @Override
+    public void onDisable() {
+        if (pregen != null) pregen.shutdown();
+        if (metrics != null) metrics.shutdown();
+        if (generator != null) generator.getEngine().flush();
+    }
+
     private void reloadLocal() {
-        this.generator = new TerraCityGenerator(this);
-        this.biomeProvider = new TerraCityBiomeProvider(
-                this,
-                generator.getPlanner(),
-                generator.getTerrain()   // ← INI YANG KURANG
-        );
+        this.generator = new TerraCityGenerator(this, loadSettings());
+        this.biomeProvider = new TerraCityBiomeProvider(generator);
+    }
+
+    private TerraCitySettings loadSettings() {
+        TemplateSet templates = TemplateSet.load(new File(getDataFolder(), "templates"), b -> {
+            Material m = Material.getMaterial(b.name());
+            return m != null && m.isBlock();
+        }, msg -> getLogger().warning("[templates] " + msg));
+        TerraCitySettings settings = TerraCitySettings.from(new BukkitConfigSource(getConfig())).withTemplates(templates);
+        if (settings.regionCache() != null && !settings.regionCache().isAbsolute()) {
+            settings = settings.withRegionCache(getDataFolder().toPath().resolve(settings.regionCache()));
+        }
+        return settings;
+    }
+
+    /**
+     * Logs (and tells {@code sender}, when non-null) an error for every seed shared by loaded
+     * TerraCity worlds whose {@code generation.noise-worlds} entries disagree. The engine is keyed
+     * by seed, so only the first of those worlds to generate gets its noise, and which one that
+     * is can change between restarts.
+     */
+    private void checkNoiseSeeds(CommandSender sender) {
+        TerraCitySettings settings = generator.getSettings();
+        Map<Long, List<World>> bySeed = new LinkedHashMap<>();
+        for (World w : Bukkit.getWorlds()) {
+            if (w.getGenerator() == generator) bySeed.computeIfAbsent(w.getSeed(), k -> new ArrayList<>()).add(w);
+        }
+        for (Map.Entry<Long, List<World>> e : bySeed.entrySet()) {
+            StringJoiner worlds = new StringJoiner(", ");
+            Set<NoiseEngine.Kind> kinds = EnumSet.noneOf(NoiseEngine.Kind.class);
+            for (World w : e.getValue()) {
+                NoiseEngine.Kind k = settings.noiseFor(w.getName());
+                kinds.add(k);
+                worlds.add(w.getName() + "=" + k.id());
+            }
+            if (kinds.size() < 2) continue;
+            String msg = "Worlds sharing seed " + e.getKey() + " ask for different noise (" + worlds
+                    + "); they must use the same engine. Fix generation.noise-worlds.";
+            getLogger().severe("[Noise] " + msg);
+            if (sender != null) sender.sendMessage("§c" + msg);
+        }
+    }
+
+    /**
+     * Tells the sender what a reload changed and, for every world using this generator, which
+     * already generated regions (region files) would now generate differently. The region scan
+     * runs off the main thread.
+     */
+    private void reportReload(CommandSender sender, TerraCityEngine before, TerraCityEngine after) {
+        List<String> changed = TerraCitySettings.changedSections(before.getSettings(), after.getSettings());
+        sender.sendMessage("§aTerraCity config reloaded §7(generation epoch " + after.getEpoch() + ").");
+        if (changed.isEmpty()) {
+            sender.sendMessage("§7No generation settings changed.");
+            return;
+        }
+        sender.sendMessage("§7Changed: §f" + String.join(", ", changed));
+
+        if (before.getColumns() == after.getColumns()
+                && TerraCitySettings.sameCityLayout(before.getSettings(), after.getSettings())) {
+            sender.sendMessage("§7Terrain, biomes and cities are unchanged; the new settings only affect chunks generated from now on.");
+            return;
+        }
+
+        for (World w : Bukkit.getWorlds()) {
+            if (w.getGenerator() != generator) continue;
+            long seed = w.getSeed();
+            String name = w.getName();
+            before.bindWorld(name, seed);
+            after.bindWorld(name, seed);
+            File regionDir = new File(w.getWorldFolder(), "region");
+
+            Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+                List<RegionConsistency.Result> stale = new ArrayList<>();
+                int scanned = 0, terrain = 0, biomes = 0, cities = 0;
+
+                File[] files = regionDir.listFiles((dir, n) -> n.startsWith("r.") && n.endsWith(".mca"));
+                if (files != null) {
+                    for (File f : files) {
+                        String[] p = f.getName().split("\\.");
+                        if (p.length != 4) continue;
+                        int rx, rz;
+                        try {
+                            rx = Integer.parseInt(p[1]);
+                            rz = Integer.parseInt(p[2]);
+                        } catch (NumberFormatException e) {
+                            continue;
+                        }
+                        scanned++;
+
+                        RegionConsistency.Result r = RegionConsistency.check(before, after, seed, rx, rz);
+                        if (r.consistent()) continue;
+                        stale.add(r);
+                        if (r.terrain()) terrain++;
+                        if (r.biomes()) biomes++;
+                        if (r.cities()) cities++;
+                    }
+                }
+
+                if (stale.isEmpty()) {
+                    sender.sendMessage("§a" + name + ": §7all " + scanned + " generated regions still match.");
+                    return;
+                }
+                sender.sendMessage(String.format(Locale.ROOT, "§e%s: §f%d/%d §7generated regions no longer match (terrain %d, biomes %d, cities %d). See console for the list.",
+                        name, stale.size(), scanned, terrain, biomes, cities));
+
+                StringBuilder sb = new StringBuilder("[Reload] ").append(name).append(" regions inconsistent with the new config:");
+                for (RegionConsistency.Result r : stale) {
+                    sb.append(" r.").append(r.regionX()).append('.').append(r.regionZ()).append('[');
+                    if (r.terrain()) sb.append('t');
+                    if (r.biomes()) sb.append('b');
+                    if (r.cities()) sb.append('c');
+                    sb.append(']');
+                }
+                getLogger().info(sb.toString());
+            });
+        }
     }
 
 
@@ -60,6 +201,10 @@ public class TerraCityPlugin extends JavaPlugin implements TabExecutor {
             sender.sendMessage("§7/terracity create <worldName>");
             sender.sendMessage("§7/terracity reload");
             sender.sendMessage("§7/terracity info <worldName>");
+            sender.sendMessage("§7/terracity fidelity <worldName> [radiusChunks] [lattice]");
+            sender.sendMessage("§7/terracity pregen <worldName> <radiusBlocks> [workers]");
+            sender.sendMessage("§7/terracity pregen <pause|resume|cancel|status> [worldName]");
+            sender.sendMessage("§7/terracity stats [reset]");
             sender.sendMessage("§7Tip: Multiverse -> /mv create <world> normal -g TerraCity");
             return true;
         }
@@ -67,8 +212,11 @@ public class TerraCityPlugin extends JavaPlugin implements TabExecutor {
         switch (args[0].toLowerCase(Locale.ROOT)) {
             case "reload" -> {
                 reloadConfig();
-                reloadLocal();
-                sender.sendMessage("§aTerraCity config reloaded.");
+                TerraCityEngine before = generator.reload(loadSettings());
+                pregen.reload();
+                metrics.reload();
+                reportReload(sender, before, generator.getEngine());
+                checkNoiseSeeds(sender);
                 return true;
             }
             case "create" -> {
@@ -108,12 +256,84 @@ public class TerraCityPlugin extends JavaPlugin implements TabExecutor {
                     sender.sendMessage("§cWorld not loaded.");
                     return true;
                 }
+                TerraCityEngine engine = generator.engine(w);
+                TerraCitySettings.City city = engine.getSettings().city();
                 sender.sendMessage("§aTerraCity info for §f" + w.getName());
                 sender.sendMessage("§7Seed: §f" + w.getSeed());
-                sender.sendMessage("§7City enabled: §f" + getConfig().getBoolean("city.enabled", true));
-                sender.sendMessage("§7Region size: §f" + getConfig().getInt("city.region-size", 512));
-                sender.sendMessage("§7City chance: §f" + getConfig().getDouble("city.chance", 0.35));
-                sender.sendMessage("§7City radius: §f" + getConfig().getInt("city.radius", 120));
+                sender.sendMessage("§7Noise: §f" + engine.getTerrain().noise(w.getSeed()).kind().id());
+                sender.sendMessage("§7City enabled: §f" + city.enabled());
+                sender.sendMessage("§7Region size: §f" + city.regionSize());
+                sender.sendMessage("§7City chance: §f" + city.chance());
+                sender.sendMessage("§7City radius: §f" + city.radius());
+                return true;
+            }
+            case "fidelity" -> {
+                if (args.length < 2) {
+                    sender.sendMessage("§cUsage: /terracity fidelity <worldName> [radiusChunks] [lattice]");
+                    return true;
+                }
+                World w = Bukkit.getWorld(args[1]);
+                if (w == null) {
+                    sender.sendMessage("§cWorld not loaded.");
+                    return true;
+                }
+                int radius = (args.length >= 3) ? parseIntOr(args[2], 8) : 8;
+                int lattice = (args.length >= 4) ? parseIntOr(args[3], 0) : generator.getTerrain().lattice();
+                if (lattice <= 0) lattice = 4;
+
+                radius = Math.max(0, Math.min(64, radius));
+                int lat = lattice;
+                int rad = radius;
+                TerrainSampler terrain = generator.engine(w).getTerrain();
+                int cx = w.getSpawnLocation().getBlockX() >> 4;
+                int cz = w.getSpawnLocation().getBlockZ() >> 4;
+
+                sender.sendMessage("§7Sampling " + ((2 * rad + 1) * (2 * rad + 1)) + " chunks around spawn...");
+                Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+                    LatticeFidelity.Report r = LatticeFidelity.run(terrain, w.getSeed(), cx, cz, rad, lat);
+                    sender.sendMessage("§aLattice " + r.lattice() + " vs exact §7(" + r.chunks() + " chunks)");
+                    sender.sendMessage(String.format(Locale.ROOT, "§7Max error: §f%d §7blocks, mean: §f%.3f", r.maxError(), r.meanError()));
+                    sender.sendMessage(String.format(Locale.ROOT, "§7Exact columns: §f%.1f%%§7, within 2 blocks: §f%.1f%%", r.exactShare() * 100.0, r.within2Share() * 100.0));
+                    sender.sendMessage(String.format(Locale.ROOT, "§7Height pass: §f%.1f §7-> §f%.1f µs/chunk §7(x%.2f)",
+                            r.exactMicrosPerChunk(), r.latticeMicrosPerChunk(), r.speedup()));
+                });
+                return true;
+            }
+            case "pregen" -> {
+                return pregenCommand(sender, args);
+            }
+            case "stats" -> {
+                TerraCityEngine engine = generator.getEngine();
+                GenerationMetrics m = engine.getMetrics();
+                if (args.length >= 2 && args[1].equalsIgnoreCase("reset")) {
+                    m.reset();
+                    sender.sendMessage("§aTerraCity metrics reset.");
+                    return true;
+                }
+                long secs = Math.max(1, (System.currentTimeMillis() - m.since()) / 1000);
+                long chunks = m.count(GenerationMetrics.Counter.CHUNKS);
+                sender.sendMessage(String.format(Locale.ROOT, "§aTerraCity generation stats §7(last %ds, %d chunks, %.1f chunks/s)",
+                        secs, chunks, chunks / (double) secs));
+                for (GenerationMetrics.Stage s : GenerationMetrics.Stage.values()) {
+                    Histogram h = m.stage(s);
+                    if (h.count() == 0) continue;
+                    sender.sendMessage(String.format(Locale.ROOT, "§7%-9s §f%d §7calls, mean §f%.1f§7, p50 §f%.1f§7, p99 §f%.1f§7, max §f%.1f §7µs",
+                            s.id(), h.count(), h.mean() / 1000.0, h.percentile(0.5) / 1000.0,
+                            h.percentile(0.99) / 1000.0, h.max() / 1000.0));
+                }
+                sender.sendMessage(String.format(Locale.ROOT, "§7Buildings: §f%d§7, trees: §f%d §7placed / §f%d §7rejected, biome lookups: §f%d",
+                        m.count(GenerationMetrics.Counter.BUILDINGS), m.count(GenerationMetrics.Counter.TREES),
+                        m.count(GenerationMetrics.Counter.TREES_REJECTED), m.count(GenerationMetrics.Counter.BIOME_LOOKUPS)));
+                sender.sendMessage(String.format(Locale.ROOT, "§7Chunks inside/partial/outside: city §f%d/%d/%d§7, volcano §f%d/%d/%d§7, river §f-/%d/%d",
+                        m.count(GenerationMetrics.Counter.CITY_INSIDE), m.count(GenerationMetrics.Counter.CITY_PARTIAL),
+                        m.count(GenerationMetrics.Counter.CITY_OUTSIDE), m.count(GenerationMetrics.Counter.VOLCANO_INSIDE),
+                        m.count(GenerationMetrics.Counter.VOLCANO_PARTIAL), m.count(GenerationMetrics.Counter.VOLCANO_OUTSIDE),
+                        m.count(GenerationMetrics.Counter.RIVER_PARTIAL), m.count(GenerationMetrics.Counter.RIVER_OUTSIDE)));
+                StringBuilder caches = new StringBuilder("§7Cache hit rates:");
+                for (CacheStats c : engine.cacheStats()) {
+                    caches.append(String.format(Locale.ROOT, " %s §f%.1f%%§7 (%d)", c.name(), c.hitRate() * 100.0, c.lookups()));
+                }
+                sender.sendMessage(caches.toString());
                 return true;
             }
             default -> {
@@ -123,12 +343,90 @@ public class TerraCityPlugin extends JavaPlugin implements TabExecutor {
         }
     }
 
+    private boolean pregenCommand(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage("§cUsage: /terracity pregen <worldName> <radiusBlocks> [workers]");
+            sender.sendMessage("§cUsage: /terracity pregen <pause|resume|cancel|status> [worldName]");
+            return true;
+        }
+
+        String action = args[1].toLowerCase(Locale.ROOT);
+        switch (action) {
+            case "status" -> {
+                if (args.length >= 3) {
+                    PregenTask t = pregen.task(args[2]);
+                    sender.sendMessage(t == null ? "§eNo active pregen for " + args[2] : "§a" + t.summary());
+                    return true;
+                }
+                if (pregen.tasks().isEmpty()) {
+                    sender.sendMessage("§eNo active pregen tasks.");
+                    return true;
+                }
+                for (PregenTask t : pregen.tasks()) sender.sendMessage("§a" + t.summary());
+                return true;
+            }
+            case "pause", "resume", "cancel" -> {
+                if (args.length < 3) {
+                    sender.sendMessage("§cUsage: /terracity pregen " + action + " <worldName>");
+                    return true;
+                }
+                PregenTask t = switch (action) {
+                    case "pause" -> pregen.pause(args[2]);
+                    case "resume" -> pregen.resume(args[2]);
+                    default -> pregen.cancel(args[2]);
+                };
+                if (t == null) sender.sendMessage("§eNo pregen task for " + args[2]);
+                else sender.sendMessage("§aPregen " + action + ": §f" + t.summary());
+                return true;
+            }
+            default -> {
+                World w = Bukkit.getWorld(args[1]);
+                if (w == null) {
+                    sender.sendMessage("§cWorld not loaded.");
+                    return true;
+                }
+                if (args.length < 3) {
+                    sender.sendMessage("§cUsage: /terracity pregen <worldName> <radiusBlocks> [workers]");
+                    return true;
+                }
+                int radius = parseIntOr(args[2], -1);
+                if (radius <= 0) {
+                    sender.sendMessage("§cRadius must be a positive number of blocks.");
+                    return true;
+                }
+                int workers = (args.length >= 4) ? parseIntOr(args[3], 0) : 0;
+
+                PregenTask t = pregen.start(w, radius, workers);
+                sender.sendMessage("§aPregen started: §f" + t.summary());
+                sender.sendMessage("§7Workers: §f" + t.workers() + "§7, progress is saved and survives restarts.");
+                return true;
+            }
+        }
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (args.length == 1) {
-            return prefix(args[0], List.of("create", "reload", "info"));
+            return prefix(args[0], List.of("create", "reload", "info", "fidelity", "pregen", "stats"));
+        }
+        if (args[0].equalsIgnoreCase("pregen")) {
+            if (args.length == 2) {
+                List<String> options = new ArrayList<>(List.of("pause", "resume", "cancel", "status"));
+                for (World w : Bukkit.getWorlds()) options.add(w.getName());
+                return prefix(args[1], options);
+            }
+            if (args.length == 3 && List.of("pause", "resume", "cancel", "status").contains(args[1].toLowerCase(Locale.ROOT))) {
+                List<String> worlds = new ArrayList<>();
+                for (PregenTask t : pregen.tasks()) worlds.add(t.worldName());
+                for (String saved : pregen.savedWorlds()) if (!worlds.contains(saved)) worlds.add(saved);
+                return prefix(args[2], worlds);
+            }
+            return Collections.emptyList();
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("stats")) {
+            return prefix(args[1], List.of("reset"));
         }
-        if (args.length == 2 && args[0].equalsIgnoreCase("info")) {
+        if (args.length == 2 && (args[0].equalsIgnoreCase("info") || args[0].equalsIgnoreCase("fidelity"))) {
             List<String> worlds = new ArrayList<>();
             for (World w : Bukkit.getWorlds()) worlds.add(w.getName());
             return prefix(args[1], worlds);
@@ -136,6 +434,14 @@ public class TerraCityPlugin extends JavaPlugin implements TabExecutor {
         return Collections.emptyList();
     }
 
+    private static int parseIntOr(String s, int fallback) {
+        try {
+            return Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
     private static List<String> prefix(String token, List<String> options) {
         String t = token.toLowerCase(Locale.ROOT);
         List<String> out = new ArrayList<>();
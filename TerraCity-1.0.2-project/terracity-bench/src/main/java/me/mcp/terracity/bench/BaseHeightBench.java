@@ -0,0 +1,59 @@
+package me.mcp.terracity.bench;
+
+import me.mcp.terracity.core.ConfigSource;
+import me.mcp.terracity.core.TerraCityEngine;
+import me.mcp.terracity.core.TerraCitySettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TerraCityEngine#baseHeight} queries per second the way a structure search issues them:
+ * one column in each chunk, sweeping rows of never-generated chunks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BaseHeightBench {
+
+    private static final int ROW_CHUNKS = 256;
+
+    private TerraCityEngine exact;
+    private TerraCityEngine estimated;
+    private int chunk;
+
+    @Setup
+    public void setup() {
+        exact = new TerraCityEngine(BenchSupport.defaultSettings());
+        estimated = new TerraCityEngine(TerraCitySettings.from(ConfigSource.of(Map.of("cache.estimate-base-height", true))));
+    }
+
+    @Benchmark
+    public int exact() {
+        return query(exact);
+    }
+
+    @Benchmark
+    public int estimated() {
+        return query(estimated);
+    }
+
+    private int query(TerraCityEngine engine) {
+        chunk++;
+        int cx = chunk % ROW_CHUNKS, cz = chunk / ROW_CHUNKS;
+        return engine.baseHeight(BenchSupport.SEED, (cx << 4) + 8, (cz << 4) + 8);
+    }
+}
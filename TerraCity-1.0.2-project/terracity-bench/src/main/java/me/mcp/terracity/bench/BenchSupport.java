@@ -0,0 +1,25 @@
+package me.mcp.terracity.bench;
+
+import me.mcp.terracity.core.ConfigSource;
+import me.mcp.terracity.core.TerraCitySettings;
+
+import java.util.Map;
+
+/** Shared benchmark constants: a fixed seed, the overworld height range and the default config. */
+final class BenchSupport {
+    private BenchSupport(){}
+
+    static final long SEED = 8_675_309L;
+    static final int MIN_Y = -64;
+    static final int MAX_Y = 320;
+
+    /** Built-in defaults, which match the config.yml shipped with the plugin. */
+    static TerraCitySettings defaultSettings() {
+        return TerraCitySettings.defaults();
+    }
+
+    /** The defaults with {@code generation.noise} set to {@code noise}. */
+    static TerraCitySettings settings(String noise) {
+        return TerraCitySettings.from(ConfigSource.of(Map.of("generation.noise", noise)));
+    }
+}
@@ -0,0 +1,101 @@
+package me.mcp.terracity.bench;
+
+import me.mcp.terracity.core.ArrayBlockBuffer;
+import me.mcp.terracity.core.BlockBuffer;
+import me.mcp.terracity.core.TerraBlock;
+import me.mcp.terracity.core.TerraCityEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-chunk generateNoise + generateSurface into an {@link ArrayBlockBuffer}, reported per column.
+ * Each invocation generates a chunk that has not been generated before (walking a 256-chunk-wide
+ * band), so cached terrain is never reused between invocations. Prints the average number of
+ * block-write calls per chunk at the end of the run.
+ * <p>
+ * {@link #noiseAndSurfacePerBlock} runs the same generation through a buffer without a bulk
+ * {@link BlockBuffer#setRegion}, i.e. one call per block as before region fills, for comparison.
+ * Compare noise engines with {@code -p noise=legacy,permutation,opensimplex2}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkBench {
+
+    @Param({"legacy"})
+    public String noise;
+
+    private TerraCityEngine engine;
+    private ArrayBlockBuffer data;
+    private BlockBuffer perBlock;
+
+    private int chunk;
+    private long chunks;
+    private long writes;
+
+    @Setup
+    public void setup() {
+        engine = new TerraCityEngine(BenchSupport.settings(noise));
+        data = new ArrayBlockBuffer(BenchSupport.MIN_Y, BenchSupport.MAX_Y);
+        perBlock = new PerBlock(data);
+    }
+
+    @Setup(Level.Invocation)
+    public void clear() {
+        data.clear();
+    }
+
+    @TearDown
+    public void report() {
+        if (chunks > 0) System.out.printf("%nblock-write calls per chunk: %.1f%n", writes / (double) chunks);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(256)
+    public ArrayBlockBuffer noiseAndSurface() {
+        return generate(data);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(256)
+    public ArrayBlockBuffer noiseAndSurfacePerBlock() {
+        return generate(perBlock);
+    }
+
+    private ArrayBlockBuffer generate(BlockBuffer target) {
+        chunk++;
+        int cx = chunk & 255;
+        int cz = chunk >> 8;
+        engine.generateNoise(BenchSupport.SEED, cx, cz, target);
+        engine.generateSurface(BenchSupport.SEED, cx, cz, target);
+        chunks++;
+        writes += data.writes();
+        return data;
+    }
+
+    /** Delegates everything but {@code setRegion}, which falls back to per-block writes. */
+    private record PerBlock(BlockBuffer inner) implements BlockBuffer {
+        @Override public int minY() { return inner.minY(); }
+        @Override public int maxY() { return inner.maxY(); }
+        @Override public int foreignTop() { return inner.foreignTop(); }
+        @Override public TerraBlock get(int x, int y, int z) { return inner.get(x, y, z); }
+        @Override public void set(int x, int y, int z, TerraBlock block) { inner.set(x, y, z, block); }
+    }
+}
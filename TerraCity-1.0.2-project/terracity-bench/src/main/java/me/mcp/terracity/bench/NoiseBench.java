@@ -0,0 +1,82 @@
+package me.mcp.terracity.bench;
+
+import me.mcp.terracity.core.NoiseEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw cost per sample of each {@link NoiseEngine}. Table engines build their tables in
+ * {@link #setup()}, as a world does on its first chunk, so only lookups are measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoiseBench {
+
+    private static final double SCALE = 0.0046;
+
+    @Param({"legacy", "permutation", "opensimplex2"})
+    public String engine;
+
+    private NoiseEngine noise;
+    private final double[] grid = new double[256];
+    private final double[] derivatives = new double[3];
+    private int x;
+
+    @Setup
+    public void setup() {
+        noise = NoiseEngine.Kind.parse(engine, NoiseEngine.Kind.LEGACY).create();
+        noise.fbmGrid(grid, BenchSupport.SEED, 0, 0, 1, 16, 16, SCALE, 4, 2.0, 0.5);
+    }
+
+    @Benchmark
+    public double noise() {
+        x++;
+        return noise.noise(BenchSupport.SEED, x * SCALE, (x >> 4) * SCALE);
+    }
+
+    /** {@link #noise()} a few lattice cells apart each time, like sparse structure and biome lookups. */
+    @Benchmark
+    public double noiseScattered() {
+        x++;
+        return noise.noise(BenchSupport.SEED, x * 7.31, (x >> 10) * 5.17);
+    }
+
+    @Benchmark
+    public double fbm4() {
+        x++;
+        return noise.fbm(BenchSupport.SEED, x * SCALE, (x >> 4) * SCALE, 4, 2.0, 0.5);
+    }
+
+    /** {@link #fbm4()} plus both partial derivatives. */
+    @Benchmark
+    public double[] fbm4WithDerivatives() {
+        x++;
+        noise.fbmWithDerivatives(BenchSupport.SEED, x * SCALE, (x >> 4) * SCALE, 4, 2.0, 0.5, derivatives);
+        return derivatives;
+    }
+
+    /** Same work as 256 {@link #fbm4()} calls, via the grid API. */
+    @Benchmark
+    @OperationsPerInvocation(256)
+    public double[] fbm4Grid() {
+        x++;
+        noise.fbmGrid(grid, BenchSupport.SEED, x << 4, 0, 1, 16, 16, SCALE, 4, 2.0, 0.5);
+        return grid;
+    }
+}
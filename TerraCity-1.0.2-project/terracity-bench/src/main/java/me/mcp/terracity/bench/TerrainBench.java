@@ -0,0 +1,122 @@
+package me.mcp.terracity.bench;
+
+import me.mcp.terracity.core.BiomeResolver;
+import me.mcp.terracity.core.CityPlanner;
+import me.mcp.terracity.core.TerraBiome;
+import me.mcp.terracity.core.TerraCityEngine;
+import me.mcp.terracity.core.TerrainSampler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-column terrain queries. Coordinates walk forward every invocation so per-chunk caches
+ * see realistic miss rates instead of replaying one hot column.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TerrainBench {
+
+    /** A 64x64 patch of open sea for {@link BenchSupport#SEED} with the default settings. */
+    private static final int OCEAN_X = 95744, OCEAN_Z = 1024;
+
+    private TerrainSampler terrain;
+    private CityPlanner planner;
+    private BiomeResolver biomes;
+
+    private final int[] heights = new int[256];
+    private int x;
+    private int chunk;
+
+    @Setup
+    public void setup() {
+        TerraCityEngine engine = new TerraCityEngine(BenchSupport.defaultSettings());
+        terrain = engine.getTerrain();
+        planner = engine.getPlanner();
+        biomes = engine.getBiomes();
+    }
+
+    @Benchmark
+    public int height() {
+        x++;
+        return terrain.height(BenchSupport.SEED, x, x >> 6);
+    }
+
+    /** Height with the finest octaves left out, as the base-height estimator samples it. */
+    @Benchmark
+    public int heightLod1() {
+        x++;
+        return terrain.height(BenchSupport.SEED, x, x >> 6, 1);
+    }
+
+    /** Columns in deep ocean, where the river layer is skipped. */
+    @Benchmark
+    public int heightOcean() {
+        x++;
+        return terrain.height(BenchSupport.SEED, OCEAN_X + (x & 63), OCEAN_Z + ((x >> 6) & 63));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(256)
+    public int[] heightGrid() {
+        chunk++;
+        terrain.heightGrid(BenchSupport.SEED, chunk << 4, 0, 16, 16, heights);
+        return heights;
+    }
+
+    @Benchmark
+    public double riverMask() {
+        x++;
+        return terrain.riverMask(BenchSupport.SEED, x, x >> 6);
+    }
+
+    @Benchmark
+    public CityPlanner.City cityAt() {
+        x += 7;
+        return planner.cityAt(BenchSupport.SEED, x, x >> 3, terrain, terrain.seaLevel());
+    }
+
+    /** All 256 columns of a fresh chunk. */
+    @Benchmark
+    @OperationsPerInvocation(256)
+    public void biomeChunk(Blackhole bh) {
+        chunk++;
+        int bx = chunk << 4;
+        for (int lz = 0; lz < 16; lz++) {
+            for (int lx = 0; lx < 16; lx++) {
+                TerraBiome b = biomes.biomeAt(BenchSupport.SEED, bx + lx, lz);
+                bh.consume(b);
+            }
+        }
+    }
+
+    /** A fresh chunk as the server queries it: every 4x4 biome cell at each of 96 quart heights. */
+    @Benchmark
+    @OperationsPerInvocation(16 * 96)
+    public void biomeCells(Blackhole bh) {
+        chunk++;
+        int bx = chunk << 4;
+        for (int qy = 0; qy < 96; qy++) {
+            for (int qz = 0; qz < 4; qz++) {
+                for (int qx = 0; qx < 4; qx++) {
+                    bh.consume(biomes.biomeAt(BenchSupport.SEED, bx + (qx << 2), qz << 2));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package me.mcp.terracity.core;
+
+import java.util.Arrays;
+
+/** Plain-array {@link BlockBuffer} for headless generation, benchmarks and checksums. */
+public final class ArrayBlockBuffer implements BlockBuffer {
+
+    private final int minY;
+    private final int maxY;
+    private final TerraBlock[] blocks;
+
+    private long writes;
+
+    public ArrayBlockBuffer(int minY, int maxY) {
+        this.minY = minY;
+        this.maxY = maxY;
+        this.blocks = new TerraBlock[16 * 16 * (maxY - minY)];
+        clear();
+    }
+
+    public void clear() {
+        Arrays.fill(blocks, TerraBlock.AIR);
+        writes = 0;
+    }
+
+    /** Write calls ({@link #set} and {@link #setRegion} alike) since the last {@link #clear()}. */
+    public long writes() { return writes; }
+
+    private int index(int x, int y, int z) {
+        return ((y - minY) << 8) | (z << 4) | x;
+    }
+
+    private boolean inside(int x, int y, int z) {
+        return x >= 0 && x < 16 && z >= 0 && z < 16 && y >= minY && y < maxY;
+    }
+
+    @Override public int minY() { return minY; }
+
+    @Override public int maxY() { return maxY; }
+
+    // Starts empty, so everything in it was written by the generator
+    @Override public int foreignTop() { return minY - 1; }
+
+    @Override
+    public TerraBlock get(int x, int y, int z) {
+        return inside(x, y, z) ? blocks[index(x, y, z)] : TerraBlock.AIR;
+    }
+
+    @Override
+    public void set(int x, int y, int z, TerraBlock block) {
+        writes++;
+        if (inside(x, y, z)) blocks[index(x, y, z)] = block;
+    }
+
+    @Override
+    public void setRegion(int xMin, int yMin, int zMin, int xMax, int yMax, int zMax, TerraBlock block) {
+        writes++;
+        xMin = Math.max(0, xMin); xMax = Math.min(16, xMax);
+        zMin = Math.max(0, zMin); zMax = Math.min(16, zMax);
+        yMin = Math.max(minY, yMin); yMax = Math.min(maxY, yMax);
+        if (xMin >= xMax || zMin >= zMax) return;
+
+        if (xMax - xMin == 1 && zMax - zMin == 1) {
+            for (int i = index(xMin, yMin, zMin), end = index(xMin, yMax, zMin); i < end; i += 256) blocks[i] = block;
+            return;
+        }
+        for (int y = yMin; y < yMax; y++) {
+            if (xMin == 0 && xMax == 16 && zMin == 0 && zMax == 16) {
+                int i = index(0, y, 0);
+                Arrays.fill(blocks, i, i + 256, block);
+            } else {
+                for (int z = zMin; z < zMax; z++) {
+                    int i = index(xMin, y, z);
+                    Arrays.fill(blocks, i, i + (xMax - xMin), block);
+                }
+            }
+        }
+    }
+
+    /** Order-dependent hash of every block, for comparing generator output across versions. */
+    public long checksum() {
+        long h = 0x9E3779B97F4A7C15L;
+        for (TerraBlock b : blocks) {
+            h = (h ^ b.name().hashCode()) * 0x100000001B3L;
+        }
+        return h;
+    }
+}
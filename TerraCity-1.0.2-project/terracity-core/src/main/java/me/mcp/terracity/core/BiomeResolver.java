@@ -0,0 +1,112 @@
+package me.mcp.terracity.core;
+
+/**
+ * Picks a {@link TerraBiome} for a column from the cached height, climate and city layers.
+ * Biomes are resolved per 4x4 biome cell (the server's quart resolution, y ignored): a chunk's
+ * 16 cells are classified once from its {@link ColumnSample} and kept with it, so a lookup is
+ * an array read. Each cell takes the biome of its north-west column, the one the server asks for.
+ */
+public class BiomeResolver {
+
+    private static final TerraBiome[] BIOMES = TerraBiome.values();
+
+    private final CityPlanner planner;
+    private final TerrainSampler terrain;
+    private final ColumnCache columns;
+    private final RegionStore store;
+
+    // The server asks for all cells of a chunk in a row, so remember the last chunk per thread
+    private final ThreadLocal<ColumnSample> last = new ThreadLocal<>();
+
+    public BiomeResolver(CityPlanner planner, TerrainSampler terrain, ColumnCache columns) {
+        this(planner, terrain, columns, null);
+    }
+
+    /** Resolver that answers from {@code store} (may be null) for chunks not in memory. */
+    public BiomeResolver(CityPlanner planner, TerrainSampler terrain, ColumnCache columns, RegionStore store) {
+        this.planner = planner;
+        this.terrain = terrain;
+        this.columns = columns;
+        this.store = store;
+    }
+
+    public TerraBiome biomeAt(long seed, int x, int z) {
+        int chunkX = x >> 4, chunkZ = z >> 4;
+        ColumnSample cols = last.get();
+        if (cols == null || cols.seed != seed || cols.chunkX != chunkX || cols.chunkZ != chunkZ) {
+            if (store != null) {
+                int id = store.biome(seed, x, z);
+                if (id >= 0) return BIOMES[id];
+            }
+            cols = columns.get(seed, chunkX, chunkZ);
+            persist(cols);
+            last.set(cols);
+        }
+        return BIOMES[grid(cols)[(((z & 15) >> 2) << 2) | ((x & 15) >> 2)]];
+    }
+
+    /** The chunk's 4x4 biome cells as {@link TerraBiome} ordinals, indexed {@code (cellZ << 2) | cellX}. */
+    public byte[] biomeGrid(long seed, int chunkX, int chunkZ) {
+        return grid(columns.get(seed, chunkX, chunkZ)).clone();
+    }
+
+    /** Writes the chunk's layers to the region cache, if there is one and it lacks them. */
+    void persist(ColumnSample cols) {
+        if (store == null || store.contains(cols.seed, cols.chunkX, cols.chunkZ)) return;
+        int cx = (cols.chunkX << 4) + 8, cz = (cols.chunkZ << 4) + 8;
+        store.put(cols, grid(cols), terrain.volcanoAt(cols.seed, cx, cz));
+    }
+
+    private byte[] grid(ColumnSample cols) {
+        byte[] g = cols.biomeCells;
+        if (g != null) return g;
+
+        g = new byte[16];
+        for (int i = 0; i < 16; i++) g[i] = (byte) classify(cols, (i & 3) << 2, (i >> 2) << 2).ordinal();
+        cols.biomeCells = g; // deterministic, so a racing thread just computes the same array
+        return g;
+    }
+
+    private TerraBiome classify(ColumnSample cols, int lx, int lz) {
+        int sea = terrain.seaLevel();
+
+        if (planner.isEnabled()) {
+            double blend = cols.cityBlend(lx, lz);
+            if (blend > 0.0) {
+                return (blend > 0.85) ? TerraBiome.PLAINS : TerraBiome.FOREST;
+            }
+        }
+
+        int h = cols.naturalHeight(lx, lz);
+        double temp = cols.temperature(lx, lz);
+        double hum = cols.humidity(lx, lz);
+
+        boolean hot = temp > 0.35;
+        boolean cold = temp < -0.35;
+        boolean wet = hum > 0.35;
+
+        if (h >= 185) {
+            if (cold) return TerraBiome.JAGGED_PEAKS;
+            return TerraBiome.STONY_PEAKS;
+        }
+        if (h >= terrain.snowLine()) return TerraBiome.SNOWY_SLOPES;
+
+        if (h <= sea - 8) return TerraBiome.DEEP_OCEAN;
+        if (h <= sea + 2) return TerraBiome.BEACH;
+
+        if (hot && !wet) {
+            if (hum < -0.15) return TerraBiome.BADLANDS;
+            return TerraBiome.DESERT;
+        }
+        if (cold) return wet ? TerraBiome.SNOWY_TAIGA : TerraBiome.SNOWY_PLAINS;
+
+        if (wet && hot) {
+            if (hum > 0.65) return TerraBiome.JUNGLE;
+            return TerraBiome.SWAMP;
+        }
+        if (wet) return TerraBiome.FOREST;
+        if (hum < -0.20) return TerraBiome.WINDSWEPT_HILLS;
+
+        return TerraBiome.PLAINS;
+    }
+}
@@ -0,0 +1,37 @@
+package me.mcp.terracity.core;
+
+/**
+ * Chunk-local block storage the core generator writes into (x and z in 0..15, y in
+ * [{@link #minY()}, {@link #maxY()})). Implemented over Paper's ChunkData by the plugin and by
+ * {@link ArrayBlockBuffer} for headless runs.
+ */
+public interface BlockBuffer {
+
+    int minY();
+
+    int maxY();
+
+    TerraBlock get(int x, int y, int z);
+
+    void set(int x, int y, int z, TerraBlock block);
+
+    /**
+     * Highest y that may hold a block the core generator did not write (the server's own noise
+     * terrain, caves and overhangs), or below {@link #minY()} when every block came from the
+     * generator. Surface passes look for column tops from here down.
+     */
+    default int foreignTop() {
+        return maxY() - 1;
+    }
+
+    /**
+     * Fills the box from (xMin, yMin, zMin) inclusive to (xMax, yMax, zMax) exclusive, the same
+     * convention as ChunkData.setRegion. Implementations should override this with a bulk write.
+     */
+    default void setRegion(int xMin, int yMin, int zMin, int xMax, int yMax, int zMax, TerraBlock block) {
+        for (int y = yMin; y < yMax; y++)
+            for (int z = zMin; z < zMax; z++)
+                for (int x = xMin; x < xMax; x++)
+                    set(x, y, z, block);
+    }
+}
@@ -0,0 +1,163 @@
+package me.mcp.terracity.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A structure (tree, building, ...) compiled once into a packed list of cells, each holding a
+ * relative offset and a block, with a precomputed bounding box. Placing it is a single pass
+ * over the array, clipped to whatever the target can hold.
+ * <p>
+ * Cells are packed into a {@code long}: 16 bits each for dx, dy, dz (signed) and the block id.
+ */
+public final class BlockTemplate {
+
+    private final String name;
+    private final long[] cells;
+    private final int minX, minY, minZ, maxX, maxY, maxZ;
+
+    private BlockTemplate(String name, long[] cells) {
+        this.name = name;
+        this.cells = cells;
+        int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE, z0 = Integer.MAX_VALUE;
+        int x1 = Integer.MIN_VALUE, y1 = Integer.MIN_VALUE, z1 = Integer.MIN_VALUE;
+        for (long c : cells) {
+            x0 = Math.min(x0, dx(c)); x1 = Math.max(x1, dx(c));
+            y0 = Math.min(y0, dy(c)); y1 = Math.max(y1, dy(c));
+            z0 = Math.min(z0, dz(c)); z1 = Math.max(z1, dz(c));
+        }
+        if (cells.length == 0) { x0 = y0 = z0 = x1 = y1 = z1 = 0; }
+        minX = x0; minY = y0; minZ = z0;
+        maxX = x1; maxY = y1; maxZ = z1;
+    }
+
+    public String name() { return name; }
+    public int size() { return cells.length; }
+
+    public int minX() { return minX; }
+    public int minY() { return minY; }
+    public int minZ() { return minZ; }
+    public int maxX() { return maxX; }
+    public int maxY() { return maxY; }
+    public int maxZ() { return maxZ; }
+
+    /** Packed cell {@code i}; decode with {@link #dx(long)}, {@link #dy(long)}, {@link #dz(long)}, {@link #block(long)}. */
+    public long cell(int i) { return cells[i]; }
+
+    public static int dx(long cell) { return (short) (cell >>> 48); }
+    public static int dy(long cell) { return (short) (cell >>> 32); }
+    public static int dz(long cell) { return (short) (cell >>> 16); }
+    public static TerraBlock block(long cell) { return TerraBlock.byId((int) (cell & 0xFFFF)); }
+
+    private static long pack(int dx, int dy, int dz, TerraBlock b) {
+        return ((long) (dx & 0xFFFF) << 48) | ((long) (dy & 0xFFFF) << 32) | ((long) (dz & 0xFFFF) << 16) | (b.id() & 0xFFFF);
+    }
+
+    /**
+     * Writes every cell at chunk-local origin (x, y, z) into {@code data}, skipping cells that
+     * fall outside the chunk or the buffer's height range.
+     */
+    public void stamp(BlockBuffer data, int x, int y, int z) {
+        boolean inside = x + minX >= 0 && x + maxX < 16 && z + minZ >= 0 && z + maxZ < 16
+                && y + minY >= data.minY() && y + maxY < data.maxY();
+        TerraBlock[] blocks = resolve();
+        for (long c : cells) {
+            int bx = x + dx(c), by = y + dy(c), bz = z + dz(c);
+            if (!inside && (bx < 0 || bx > 15 || bz < 0 || bz > 15 || by < data.minY() || by >= data.maxY())) continue;
+            data.set(bx, by, bz, blocks[(int) (c & 0xFFFF)]);
+        }
+    }
+
+    // Block id -> TerraBlock for this template's ids, so stamping doesn't go through the intern table.
+    private volatile TerraBlock[] resolved;
+
+    private TerraBlock[] resolve() {
+        TerraBlock[] r = resolved;
+        if (r != null) return r;
+        int max = 0;
+        for (long c : cells) max = Math.max(max, (int) (c & 0xFFFF));
+        r = new TerraBlock[max + 1];
+        for (long c : cells) r[(int) (c & 0xFFFF)] = block(c);
+        resolved = r;
+        return r;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BlockTemplate t && name.equals(t.name) && Arrays.equals(cells, t.cells);
+    }
+
+    @Override
+    public int hashCode() { return name.hashCode() * 31 + Arrays.hashCode(cells); }
+
+    @Override
+    public String toString() {
+        return name + "[" + cells.length + " blocks, " + (maxX - minX + 1) + "x" + (maxY - minY + 1) + "x" + (maxZ - minZ + 1) + "]";
+    }
+
+    /** Collects cells (later writes to the same position win) and compiles them. */
+    public static final class Builder {
+        private final String name;
+        private final Map<Long, TerraBlock> cells = new HashMap<>();
+
+        public Builder(String name) {
+            this.name = name;
+        }
+
+        private static long key(int dx, int dy, int dz) {
+            return pack(dx, dy, dz, TerraBlock.AIR) & ~0xFFFFL;
+        }
+
+        public Builder set(int dx, int dy, int dz, TerraBlock b) {
+            cells.put(key(dx, dy, dz), b);
+            return this;
+        }
+
+        /** Sets the cell only if nothing has been placed there yet. */
+        public Builder setIfEmpty(int dx, int dy, int dz, TerraBlock b) {
+            cells.putIfAbsent(key(dx, dy, dz), b);
+            return this;
+        }
+
+        public boolean has(int dx, int dy, int dz) {
+            return cells.containsKey(key(dx, dy, dz));
+        }
+
+        public Builder fill(int x1, int y1, int z1, int x2, int y2, int z2, TerraBlock b) {
+            for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++)
+                for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); y++)
+                    for (int z = Math.min(z1, z2); z <= Math.max(z1, z2); z++)
+                        set(x, y, z, b);
+            return this;
+        }
+
+        /** Box with {@code wall} on its faces and air inside. */
+        public Builder hollowBox(int x1, int y1, int z1, int x2, int y2, int z2, TerraBlock wall) {
+            int xa = Math.min(x1, x2), xb = Math.max(x1, x2);
+            int ya = Math.min(y1, y2), yb = Math.max(y1, y2);
+            int za = Math.min(z1, z2), zb = Math.max(z1, z2);
+            for (int x = xa; x <= xb; x++)
+                for (int y = ya; y <= yb; y++)
+                    for (int z = za; z <= zb; z++) {
+                        boolean edge = (x == xa || x == xb || y == ya || y == yb || z == za || z == zb);
+                        set(x, y, z, edge ? wall : TerraBlock.AIR);
+                    }
+            return this;
+        }
+
+        public BlockTemplate build() {
+            // y, then z, then x: consecutive writes stay in the same chunk section
+            long[] out = cells.entrySet().stream()
+                    .sorted(Map.Entry.<Long, TerraBlock>comparingByKey((a, b) -> {
+                        int c = Integer.compare(dy(a), dy(b));
+                        if (c == 0) c = Integer.compare(dz(a), dz(b));
+                        if (c == 0) c = Integer.compare(dx(a), dx(b));
+                        return c;
+                    }))
+                    .mapToLong(e -> e.getKey() | (e.getValue().id() & 0xFFFF))
+                    .toArray();
+            return new BlockTemplate(name, out);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package me.mcp.terracity.core;
+
+/** Hit/miss counts of one generation cache since it was created. */
+public record CacheStats(String name, long hits, long misses) {
+
+    public long lookups() { return hits + misses; }
+
+    /** Share of lookups that hit, 0..1 (0 when there were none). */
+    public double hitRate() {
+        long n = lookups();
+        return n == 0 ? 0.0 : (double) hits / n;
+    }
+}
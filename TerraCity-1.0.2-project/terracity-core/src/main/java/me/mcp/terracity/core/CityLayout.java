@@ -0,0 +1,121 @@
+package me.mcp.terracity.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything about a city's street plan that doesn't depend on the blocks already in a chunk,
+ * resolved once per city: the buildings that go on its plots and, per chunk, bitmasks of road
+ * and sidewalk columns. Built by {@link CityStructures#layout}; per-chunk work is then a walk
+ * over a few plots and a bit test per column.
+ * <p>
+ * Buildings that fit inside their plot's chunk are listed per chunk and stand on that chunk's
+ * ground. Buildings that cross a chunk border are in {@link #spanning()} and stand on the city's
+ * base height, which every chunk they touch agrees on.
+ */
+public final class CityLayout {
+
+    /**
+     * A building on the plot whose origin column is ({@code x}, {@code z}). It is stamped at the
+     * origin + 1 + ({@code offsetX}, {@code offsetZ}), one block above the ground.
+     */
+    public record Plot(int x, int z, BlockTemplate building, int offsetX, int offsetZ) {}
+
+    private static final Plot[] NO_PLOTS = new Plot[0];
+    private static final long[] NO_COLUMNS = new long[4];
+
+    public final long seed;
+    public final CityPlanner.City city;
+
+    private final int minChunkX, minChunkZ, width, depth;
+    private final Plot[][] plots;
+    private final long[][] roads;
+    private final long[][] sidewalks;
+    private final List<Plot> spanning;
+
+    /**
+     * Rasterizes the road grid over every chunk the city blends into and buckets {@code plots}
+     * by chunk, keeping their order. Roads run every {@code roadSpacing} blocks from the center,
+     * {@code roadWidth} wide; sidewalks are the {@code sidewalkWidth} columns beside them.
+     */
+    CityLayout(long seed, CityPlanner.City city, int roadSpacing, int roadWidth, int sidewalkWidth,
+               List<Plot> plots, List<Plot> spanning) {
+        this.seed = seed;
+        this.city = city;
+        this.spanning = List.copyOf(spanning);
+        int reach = city.radius() + city.blend();
+        minChunkX = (city.centerX() - reach) >> 4;
+        minChunkZ = (city.centerZ() - reach) >> 4;
+        width = ((city.centerX() + reach) >> 4) - minChunkX + 1;
+        depth = ((city.centerZ() + reach) >> 4) - minChunkZ + 1;
+
+        int half = roadWidth / 2;
+        this.roads = new long[width * depth][];
+        this.sidewalks = new long[width * depth][];
+        for (int c = 0; c < width * depth; c++) {
+            int x0 = (minChunkX + c % width) << 4;
+            int z0 = (minChunkZ + c / width) << 4;
+            long[] road = new long[4], walk = new long[4];
+            for (int i = 0; i < 256; i++) {
+                int mx = mod(Math.abs(x0 + (i & 15) - city.centerX()), roadSpacing);
+                int mz = mod(Math.abs(z0 + (i >> 4) - city.centerZ()), roadSpacing);
+                if (mx <= half || mz <= half) road[i >> 6] |= 1L << i;
+                else if (mx <= half + sidewalkWidth || mz <= half + sidewalkWidth) walk[i >> 6] |= 1L << i;
+            }
+            roads[c] = road;
+            sidewalks[c] = walk;
+        }
+
+        List<List<Plot>> byChunk = new ArrayList<>(width * depth);
+        for (int c = 0; c < width * depth; c++) byChunk.add(null);
+        for (Plot p : plots) {
+            int c = chunk(p.x >> 4, p.z >> 4);
+            if (c < 0) continue;
+            if (byChunk.get(c) == null) byChunk.set(c, new ArrayList<>(2));
+            byChunk.get(c).add(p);
+        }
+        this.plots = new Plot[width * depth][];
+        for (int c = 0; c < width * depth; c++) {
+            List<Plot> l = byChunk.get(c);
+            this.plots[c] = (l == null) ? NO_PLOTS : l.toArray(NO_PLOTS);
+        }
+    }
+
+    /** Buildings whose plot origin is in the chunk, in placement order. */
+    public Plot[] plots(int chunkX, int chunkZ) {
+        int c = chunk(chunkX, chunkZ);
+        return (c < 0) ? NO_PLOTS : plots[c];
+    }
+
+    /** Buildings that cross chunk borders, for every chunk they touch to stamp its slice of. */
+    public List<Plot> spanning() {
+        return spanning;
+    }
+
+    /** Road columns of the chunk, bit {@code (lz << 4) | lx}. Do not modify. */
+    public long[] roads(int chunkX, int chunkZ) {
+        int c = chunk(chunkX, chunkZ);
+        return (c < 0) ? NO_COLUMNS : roads[c];
+    }
+
+    /** Sidewalk columns (beside a road, not on it) of the chunk, bit {@code (lz << 4) | lx}. Do not modify. */
+    public long[] sidewalks(int chunkX, int chunkZ) {
+        int c = chunk(chunkX, chunkZ);
+        return (c < 0) ? NO_COLUMNS : sidewalks[c];
+    }
+
+    public static boolean has(long[] mask, int lx, int lz) {
+        int i = (lz << 4) | lx;
+        return (mask[i >> 6] & (1L << i)) != 0;
+    }
+
+    private int chunk(int chunkX, int chunkZ) {
+        int cx = chunkX - minChunkX, cz = chunkZ - minChunkZ;
+        return (cx < 0 || cz < 0 || cx >= width || cz >= depth) ? -1 : cz * width + cx;
+    }
+
+    private static int mod(int a, int m) {
+        int r = a % m;
+        return r < 0 ? r + m : r;
+    }
+}
@@ -0,0 +1,136 @@
+package me.mcp.terracity.core;
+
+public class CityPlanner {
+
+    public record City(int centerX, int centerZ, int radius, int blend, int baseHeight) {}
+
+    private final boolean enabled;
+    private final int regionSize;
+    private final double chance;
+    private final int radius;
+    private final int blend;
+    private final int baseHeightMin;
+    private final int seedSalt;
+    private final TerraRandom.Mode randomMode;
+
+    private final RegionCache<City> cities = new RegionCache<>(1024);
+
+    public CityPlanner(TerraCitySettings settings) {
+        TerraCitySettings.City c = settings.city();
+        enabled = c.enabled();
+        regionSize = c.regionSize();
+        chance = c.chance();
+        radius = c.radius();
+        blend = c.blend();
+        baseHeightMin = c.baseHeightMin();
+        seedSalt = settings.seedSalt();
+        randomMode = settings.random();
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    public CacheStats cacheStats() { return cities.stats("cities"); }
+
+    /**
+     * City of the region containing the column, or null. Resolved cities (and empty regions)
+     * are cached per region, so repeated per-column calls are a slot lookup.
+     * The sampler and sea level must be the same for every call on this planner.
+     */
+    public City cityAt(long seed, int worldX, int worldZ, TerrainSampler sampler, int seaLevel) {
+        if (!enabled) return null;
+
+        int rx = floorDiv(worldX, regionSize);
+        int rz = floorDiv(worldZ, regionSize);
+        RegionCache.Entry<City> e = cities.lookup(seed, rx, rz);
+        if (e != null) return e.value();
+        return cities.store(seed, rx, rz, resolveCity(seed, rx, rz, sampler, seaLevel));
+    }
+
+    private City resolveCity(long seed, int rx, int rz, TerrainSampler sampler, int seaLevel) {
+        long h = mix(seed, rx, rz, seedSalt);
+        TerraRandom r = new TerraRandom(randomMode, h);
+
+        if (r.nextDouble() > chance) return null;
+
+        int regionOriginX = rx * regionSize;
+        int regionOriginZ = rz * regionSize;
+
+        int cx = regionOriginX + regionSize / 2 + r.nextInt(Math.max(1, regionSize / 3)) - (regionSize / 6);
+        int cz = regionOriginZ + regionSize / 2 + r.nextInt(Math.max(1, regionSize / 3)) - (regionSize / 6);
+
+        int natural = sampler.height(seed, cx, cz);
+        int base = Math.max(baseHeightMin, Math.max(seaLevel + 10, natural));
+        base = Math.min(base, baseHeightMin + 60);
+
+        return new City(cx, cz, radius, blend, base);
+    }
+
+    public double cityBlendFactor(City city, int x, int z) {
+        if (city == null) return 0.0;
+        int dx = x - city.centerX();
+        int dz = z - city.centerZ();
+        double dist = Math.sqrt((double)dx*dx + (double)dz*dz);
+
+        int r = city.radius();
+        int b = city.blend();
+
+        if (dist <= r) return 1.0;
+        if (b <= 0) return 0.0;
+        if (dist >= r + b) return 0.0;
+
+        double t = 1.0 - ((dist - r) / (double)b);
+        return clamp01(t);
+    }
+
+    /** How {@code city} (may be null) blends into the 16x16 chunk at block (x0, z0). */
+    public Influence influence(City city, int x0, int z0) {
+        return influence(city, x0, z0, 16, 16);
+    }
+
+    /** How {@code city} (may be null) blends into the w*h block rectangle at (x0, z0). */
+    public Influence influence(City city, int x0, int z0, int w, int h) {
+        if (city == null) return Influence.OUTSIDE;
+        long r = city.radius(), b = city.blend();
+        long outerSq = (b > 0) ? (r + b) * (r + b) : r * r + 1;
+        return Influence.of(city.centerX(), city.centerZ(), r * r, outerSq, x0, z0, w, h);
+    }
+
+    /**
+     * Whether any column of the w*h block rectangle at (x0, z0) belongs to a city. Columns only
+     * belong to the city of their own region, so each region the rectangle touches is checked
+     * over its share of the rectangle.
+     */
+    public boolean anyCity(long seed, int x0, int z0, int w, int h, TerrainSampler sampler, int seaLevel) {
+        if (!enabled) return false;
+        for (int rz = floorDiv(z0, regionSize); rz <= floorDiv(z0 + h - 1, regionSize); rz++) {
+            for (int rx = floorDiv(x0, regionSize); rx <= floorDiv(x0 + w - 1, regionSize); rx++) {
+                int ix0 = Math.max(x0, rx * regionSize), iz0 = Math.max(z0, rz * regionSize);
+                int ix1 = Math.min(x0 + w, (rx + 1) * regionSize), iz1 = Math.min(z0 + h, (rz + 1) * regionSize);
+                City city = cityAt(seed, ix0, iz0, sampler, seaLevel);
+                if (influence(city, ix0, iz0, ix1 - ix0, iz1 - iz0) != Influence.OUTSIDE) return true;
+            }
+        }
+        return false;
+    }
+
+    private static int floorDiv(int a, int b) {
+        int r = a / b;
+        if ((a ^ b) < 0 && (r * b != a)) r--;
+        return r;
+    }
+
+    private static double clamp01(double v) {
+        return Math.max(0.0, Math.min(1.0, v));
+    }
+
+    private static long mix(long seed, int x, int z, int salt) {
+        long h = seed ^ (salt * 0x9E3779B97F4A7C15L);
+        h ^= (long)x * 0xC2B2AE3D27D4EB4FL;
+        h ^= (long)z * 0x165667B19E3779F9L;
+        h *= 0xD6E8FEB86659FD93L;
+        h ^= (h >>> 33);
+        h *= 0xD6E8FEB86659FD93L;
+        h ^= (h >>> 33);
+        return h;
+    }
+}
@@ -0,0 +1,330 @@
+package me.mcp.terracity.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class CityStructures {
+
+    private static final int HOUSE = 0, TOWER = 1, HALL = 2;
+
+    /** Columns of sidewalk on each side of a road. */
+    private static final int SIDEWALK = 2;
+
+    private final TerraBlock wall, floor, roof, trim, window, stone;
+    private final TerraRandom.Mode randomMode;
+    private final List<BlockTemplate> custom;
+    private final double customChance;
+    private final int plotSize, plotMargin, roadSpacing, roadWidth, maxBuildingsPerChunk, regionSize;
+    private final boolean spanChunks;
+    private final ConcurrentHashMap<Integer, BlockTemplate> templates = new ConcurrentHashMap<>();
+    private final RegionCache<CityLayout> layouts = new RegionCache<>(256);
+    private final PendingWrites pending = new PendingWrites();
+
+    public CityStructures(TerraCitySettings settings) {
+        TerraCitySettings.Palette p = settings.city().palette();
+        wall = p.wall();
+        floor = p.floor();
+        roof = p.roof();
+        trim = p.trim();
+        window = p.window();
+        stone = p.stone();
+        randomMode = settings.random();
+        custom = settings.templates().buildings();
+        customChance = settings.city().customChance();
+
+        TerraCitySettings.City c = settings.city();
+        plotSize = c.plotSize();
+        plotMargin = c.plotMargin();
+        roadSpacing = c.roadSpacing();
+        roadWidth = c.roadWidth();
+        maxBuildingsPerChunk = c.maxBuildingsPerChunk();
+        regionSize = c.regionSize();
+        spanChunks = c.spanChunks();
+    }
+
+    /**
+     * City's plots and road masks, built on first use and cached per city. Its cross-chunk
+     * buildings go into the pending writes when the first of its chunks places its buildings.
+     */
+    public CityLayout layout(long seed, CityPlanner.City city) {
+        RegionCache.Entry<CityLayout> e = layouts.lookup(seed, city.centerX(), city.centerZ());
+        CityLayout layout = (e != null && e.value().city.equals(city)) ? e.value() : null;
+        if (layout == null) layout = layouts.store(seed, city.centerX(), city.centerZ(), buildLayout(seed, city));
+        return layout;
+    }
+
+    public CacheStats layoutCacheStats() { return layouts.stats("city-layouts"); }
+
+    /** Chunks still waiting for a slice of a cross-chunk building. */
+    public int pendingChunks() { return pending.size(); }
+
+    // Cross-chunk buildings as placements on the city's base height, for PendingWrites to split
+    private static List<PendingWrites.Placement> placements(CityLayout layout) {
+        CityPlanner.City city = layout.city;
+        List<PendingWrites.Placement> placements = new ArrayList<>(layout.spanning().size());
+        for (CityLayout.Plot p : layout.spanning()) {
+            placements.add(new PendingWrites.Placement(p.building(),
+                    p.x() + 1 + p.offsetX(), city.baseHeight() + 1, p.z() + 1 + p.offsetZ()));
+        }
+        return placements;
+    }
+
+    /**
+     * Places up to {@code maxBuildingsPerChunk} of the layout's buildings on the chunk; returns
+     * how many. {@code tops} is the chunk's top-solid heightmap ({@code (lz << 4) | lx}) if the
+     * caller has one, or null to scan the columns.
+     */
+    public int generateBuildingsInChunk(BlockBuffer data, int[] tops, int chunkX, int chunkZ, CityLayout layout) {
+        int built = 0;
+        for (CityLayout.Plot p : layout.plots(chunkX, chunkZ)) {
+            if (built >= maxBuildingsPerChunk) break;
+
+            int localX = p.x() & 15;
+            int localZ = p.z() & 15;
+            int groundY = (tops != null)
+                    ? tops[(localZ << 4) | localX]
+                    : findTopSolidY(data, localX, localZ, data.minY(), data.maxY());
+            if (groundY < data.minY() + 2) continue;
+
+            p.building().stamp(data, localX + 1 + p.offsetX(), groundY + 1, localZ + 1 + p.offsetZ());
+            built++;
+        }
+        if (layout.spanning().isEmpty()) return built;
+        CityPlanner.City city = layout.city;
+        return built + pending.apply(layout.seed, city.centerX(), city.centerZ(), () -> placements(layout),
+                chunkX, chunkZ, data);
+    }
+
+    // Every plot origin of the city in placement order (x, then z), with the random draws that
+    // used to happen per chunk: the same seeds in the same order. Each chunk keeps its first
+    // maxBuildingsPerChunk buildings; ones that would cross a chunk border are kept only with
+    // span-chunks on and when every chunk they touch belongs to this city, and do not count
+    // towards that limit.
+    private CityLayout buildLayout(long seed, CityPlanner.City city) {
+        List<CityLayout.Plot> plots = new ArrayList<>();
+        List<CityLayout.Plot> spanning = new ArrayList<>();
+        Map<Long, Integer> perChunk = new HashMap<>();
+        TerraRandom r = new TerraRandom(randomMode);
+
+        int reach = city.radius() / plotSize + 1;
+        int size = Math.max(9, Math.min(plotSize - 2, 13));
+        for (int i = -reach; i <= reach; i++) {
+            for (int j = -reach; j <= reach; j++) {
+                int wx = city.centerX() + i * plotSize;
+                int wz = city.centerZ() + j * plotSize;
+
+                if (!insideCityCore(city, wx, wz)) continue;
+                if (nearRoad(city, wx, wz, roadSpacing, roadWidth, plotMargin)) continue;
+
+                long chunk = ((long)(wx >> 4) << 32) ^ ((wz >> 4) & 0xFFFFFFFFL);
+                if (perChunk.getOrDefault(chunk, 0) >= maxBuildingsPerChunk) continue;
+
+                r.reseed(hash(seed, wx, wz));
+                if (r.nextDouble() > 0.55) continue;
+
+                int x0 = (wx & 15) + 1;
+                int z0 = (wz & 15) + 1;
+                boolean fits = x0 + size < 15 && z0 + size < 15;
+                if (!fits && !spanChunks) continue;
+
+                // only draws when custom templates exist, so the built-in layout stays seed-stable
+                BlockTemplate variant = null;
+                if (!custom.isEmpty() && r.nextDouble() < customChance) {
+                    variant = custom.get(r.nextInt(custom.size()));
+                    if (!spanChunks && (x0 + variant.minX() < 0 || x0 + variant.maxX() > 15
+                            || z0 + variant.minZ() < 0 || z0 + variant.maxZ() > 15)) variant = null;
+                }
+
+                CityLayout.Plot plot;
+                if (variant != null) {
+                    plot = new CityLayout.Plot(wx, wz, variant, 0, 0);
+                } else {
+                    int type = r.nextInt(100);
+                    if (type < 60) {
+                        plot = new CityLayout.Plot(wx, wz, template(HOUSE, size, 4 + r.nextInt(3)), 0, 0);
+                    } else if (type < 85) {
+                        int radius = 4 + r.nextInt(2);
+                        plot = new CityLayout.Plot(wx, wz, template(TOWER, radius, 14 + r.nextInt(10)), size/2, size/2);
+                    } else {
+                        plot = new CityLayout.Plot(wx, wz, template(HALL, size, 5 + r.nextInt(3)), 0, 0);
+                    }
+                }
+
+                if (withinChunk(plot)) {
+                    plots.add(plot);
+                    perChunk.merge(chunk, 1, Integer::sum);
+                } else if (ownedBy(city, plot)) {
+                    spanning.add(plot);
+                }
+            }
+        }
+        return new CityLayout(seed, city, roadSpacing, roadWidth, SIDEWALK, plots, spanning);
+    }
+
+    private static boolean withinChunk(CityLayout.Plot p) {
+        BlockTemplate t = p.building();
+        int x = (p.x() & 15) + 1 + p.offsetX(), z = (p.z() & 15) + 1 + p.offsetZ();
+        return x + t.minX() >= 0 && x + t.maxX() <= 15 && z + t.minZ() >= 0 && z + t.maxZ() <= 15;
+    }
+
+    // Chunks are given the city of the region their center is in, so a building may only touch
+    // chunks centered in the city's own region; any other chunk would never stamp its slice.
+    private boolean ownedBy(CityPlanner.City city, CityLayout.Plot p) {
+        BlockTemplate t = p.building();
+        int x = p.x() + 1 + p.offsetX(), z = p.z() + 1 + p.offsetZ();
+        int rx = Math.floorDiv(city.centerX(), regionSize), rz = Math.floorDiv(city.centerZ(), regionSize);
+        for (int cz = (z + t.minZ()) >> 4; cz <= (z + t.maxZ()) >> 4; cz++) {
+            for (int cx = (x + t.minX()) >> 4; cx <= (x + t.maxX()) >> 4; cx++) {
+                if (Math.floorDiv((cx << 4) + 8, regionSize) != rx || Math.floorDiv((cz << 4) + 8, regionSize) != rz) return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean insideCityCore(CityPlanner.City city, int x, int z) {
+        int dx = x - city.centerX();
+        int dz = z - city.centerZ();
+        double dist = Math.sqrt((double)dx*dx + (double)dz*dz);
+        return dist <= (city.radius() - Math.max(8, city.blend()/2));
+    }
+
+    private boolean nearRoad(CityPlanner.City city, int x, int z, int roadSpacing, int roadWidth, int margin) {
+        int rx = x - city.centerX();
+        int rz = z - city.centerZ();
+
+        int half = roadWidth / 2;
+
+        int mx = mod(Math.abs(rx), roadSpacing);
+        int mz = mod(Math.abs(rz), roadSpacing);
+
+        return mx <= half + margin || mz <= half + margin;
+    }
+
+    // Templates are relative to the plot corner at ground level + 1 (towers: their centre).
+    // Keyed by shape and the size/height drawn for it; the palette is fixed per instance.
+    private BlockTemplate template(int shape, int a, int b) {
+        return templates.computeIfAbsent((shape << 16) | (a << 8) | b, k -> switch (shape) {
+            case HOUSE -> house(a, b);
+            case TOWER -> tower(a, b);
+            default -> hall(a, b);
+        });
+    }
+
+    private BlockTemplate house(int size, int h) {
+        BlockTemplate.Builder t = new BlockTemplate.Builder("house-" + size + "-" + h);
+
+        t.fill(0, -1, 0, size - 1, -1, size - 1, floor);
+        t.hollowBox(0, 0, 0, size - 1, h, size - 1, wall);
+
+        for (int dy = 0; dy <= h; dy++) {
+            t.set(0, dy, 0, trim);
+            t.set(size - 1, dy, 0, trim);
+            t.set(0, dy, size - 1, trim);
+            t.set(size - 1, dy, size - 1, trim);
+        }
+
+        int layers = Math.max(2, size / 3);
+        for (int i = 0; i < layers; i++) {
+            t.fill(i, h + i, i, size - 1 - i, h + i, size - 1 - i, roof);
+        }
+
+        int doorX = size / 2;
+        t.set(doorX, 0, 0, TerraBlock.AIR);
+        t.set(doorX, 1, 0, TerraBlock.AIR);
+
+        for (int dx = 2; dx < size - 2; dx += 3) {
+            t.set(dx, 2, 0, window);
+            t.set(dx, 2, size - 1, window);
+        }
+        for (int dz = 2; dz < size - 2; dz += 3) {
+            t.set(0, 2, dz, window);
+            t.set(size - 1, 2, dz, window);
+        }
+
+        t.set(1, 3, 1, TerraBlock.LANTERN);
+        t.set(size - 2, 3, 1, TerraBlock.LANTERN);
+        t.set(1, 3, size - 2, TerraBlock.LANTERN);
+        t.set(size - 2, 3, size - 2, TerraBlock.LANTERN);
+        return t.build();
+    }
+
+    private BlockTemplate tower(int radius, int height) {
+        BlockTemplate.Builder t = new BlockTemplate.Builder("tower-" + radius + "-" + height);
+
+        for (int y = 0; y <= height; y++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                for (int dz = -radius; dz <= radius; dz++) {
+                    int d2 = dx*dx + dz*dz;
+                    if (d2 > radius*radius) continue;
+
+                    boolean edge = d2 >= (radius-1)*(radius-1);
+                    if (edge) t.set(dx, y, dz, stone);
+                    else if (y == 0) t.set(dx, y, dz, floor);
+                    else if (y < height - 1) t.set(dx, y, dz, TerraBlock.AIR);
+                    else t.set(dx, y, dz, roof);
+                }
+            }
+        }
+
+        for (int y = 3; y < height - 2; y += 4) {
+            t.set(radius, y, 0, window);
+            t.set(-radius, y, 0, window);
+            t.set(0, y, radius, window);
+            t.set(0, y, -radius, window);
+        }
+
+        t.set(0, height + 1, 0, TerraBlock.LANTERN);
+        return t.build();
+    }
+
+    private BlockTemplate hall(int size, int h) {
+        BlockTemplate.Builder t = new BlockTemplate.Builder("hall-" + size + "-" + h);
+        int w = Math.max(11, size);
+        int d = Math.max(9, size - 2);
+
+        t.fill(0, -1, 0, w - 1, -1, d - 1, floor);
+        t.hollowBox(0, 0, 0, w - 1, h, d - 1, stone);
+
+        t.fill(0, h + 1, 0, w - 1, h + 1, d - 1, roof);
+        for (int x = 0; x < w; x++) {
+            t.set(x, h + 2, 0, trim);
+            t.set(x, h + 2, d - 1, trim);
+        }
+        for (int z = 0; z < d; z++) {
+            t.set(0, h + 2, z, trim);
+            t.set(w - 1, h + 2, z, trim);
+        }
+
+        for (int x = 2; x < w - 2; x += 3) {
+            t.set(x, 2, 0, window);
+            t.set(x, 2, d - 1, window);
+        }
+
+        int doorX = w / 2;
+        t.set(doorX, 0, 0, TerraBlock.AIR);
+        t.set(doorX, 1, 0, TerraBlock.AIR);
+
+        t.set(w/2, h, d/2, TerraBlock.LANTERN);
+        return t.build();
+    }
+
+    private static int findTopSolidY(BlockBuffer data, int lx, int lz, int minY, int maxY) {
+        for (int y = maxY - 1; y >= minY; y--) {
+            TerraBlock m = data.get(lx, y, lz);
+            if (m != TerraBlock.AIR && m != TerraBlock.WATER) return y;
+        }
+        return minY - 1;
+    }
+
+    private static long hash(long seed, int x, int z) {
+        return CoordHash.mix(seed, x, z);
+    }
+
+    private static int mod(int a, int m) {
+        int r = a % m;
+        return r < 0 ? r + m : r;
+    }
+}
@@ -0,0 +1,142 @@
+package me.mcp.terracity.core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe LRU cache of per-chunk {@link ColumnSample}s.
+ * The map is split into segments so Paper's worker threads rarely contend on the same lock;
+ * samples are computed outside the lock (two threads may compute the same chunk, which is
+ * harmless since the result is deterministic).
+ */
+public class ColumnCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final TerrainSampler terrain;
+    private final CityPlanner planner;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private final int seaLevel;
+    private final double tScale;
+    private final double hScale;
+
+    public ColumnCache(TerraCitySettings settings, TerrainSampler terrain, CityPlanner planner) {
+        this.terrain = terrain;
+        this.planner = planner;
+        seaLevel = settings.terrain().seaLevel();
+        tScale = settings.biomes().temperatureScale();
+        hScale = settings.biomes().humidityScale();
+
+        int maxChunks = Math.max(SEGMENTS, settings.columnCacheChunks());
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment(maxChunks / SEGMENTS);
+    }
+
+    /** Column data for the chunk, computing it on a miss. */
+    public ColumnSample get(long seed, int chunkX, int chunkZ) {
+        long key = key(seed, chunkX, chunkZ);
+        Segment seg = segments[(int)(key >>> 60) & (SEGMENTS - 1)];
+
+        ColumnSample s;
+        synchronized (seg) {
+            s = seg.get(key);
+        }
+        if (s != null && s.seed == seed && s.chunkX == chunkX && s.chunkZ == chunkZ) {
+            hits.increment();
+            return s;
+        }
+
+        misses.increment();
+        s = compute(seed, chunkX, chunkZ);
+        synchronized (seg) {
+            seg.put(key, s);
+        }
+        return s;
+    }
+
+    /** Column data for the chunk if it is cached, else null (nothing is computed or counted). */
+    public ColumnSample peek(long seed, int chunkX, int chunkZ) {
+        long key = key(seed, chunkX, chunkZ);
+        Segment seg = segments[(int)(key >>> 60) & (SEGMENTS - 1)];
+
+        ColumnSample s;
+        synchronized (seg) {
+            s = seg.get(key);
+        }
+        return (s != null && s.seed == seed && s.chunkX == chunkX && s.chunkZ == chunkZ) ? s : null;
+    }
+
+    public CacheStats stats() {
+        return new CacheStats("columns", hits.sum(), misses.sum());
+    }
+
+    /** Column data for the chunk containing the given block column. */
+    public ColumnSample at(long seed, int x, int z) {
+        return get(seed, x >> 4, z >> 4);
+    }
+
+    ColumnSample compute(long seed, int chunkX, int chunkZ) {
+        int baseX = chunkX << 4;
+        int baseZ = chunkZ << 4;
+
+        CityPlanner.City city = planner.cityAt(seed, baseX + 8, baseZ + 8, terrain, seaLevel);
+        ColumnSample s = new ColumnSample(seed, chunkX, chunkZ, city);
+
+        // One batch noise evaluation per layer for the whole chunk
+        terrain.heightGrid(seed, baseX, baseZ, 16, 16, s.naturalHeight, s);
+        terrain.temperatureGrid(seed, baseX, baseZ, 16, 16, tScale, s.temperature);
+        terrain.humidityGrid(seed, baseX, baseZ, 16, 16, hScale, s.humidity);
+
+        // Chunks wholly outside or inside the city need no per-column blend
+        s.cityInfluence = planner.influence(city, baseX, baseZ);
+        switch (s.cityInfluence) {
+            case OUTSIDE -> System.arraycopy(s.naturalHeight, 0, s.height, 0, 256);
+            case INSIDE -> {
+                Arrays.fill(s.cityBlend, 1.0);
+                Arrays.fill(s.height, city.baseHeight());
+            }
+            case PARTIAL -> {
+                for (int i = 0; i < 256; i++) {
+                    int natural = s.naturalHeight[i];
+                    double t = planner.cityBlendFactor(city, baseX + (i & 15), baseZ + (i >> 4));
+                    s.cityBlend[i] = t;
+                    s.height[i] = (t > 0.0) ? (int)Math.round(natural + (city.baseHeight() - natural) * t) : natural;
+                }
+            }
+        }
+        return s;
+    }
+
+    private static long key(long seed, int chunkX, int chunkZ) {
+        return CoordHash.mix(seed, chunkX, chunkZ);
+    }
+
+    // Access-ordered, so the first entry is the least recently used one
+    private static final class Segment {
+        private final LinkedHashMap<Long, ColumnSample> map;
+        private final int capacity;
+
+        Segment(int capacity) {
+            this.map = new LinkedHashMap<>(Math.min(capacity, 64), 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        ColumnSample get(long key) {
+            return map.get(key);
+        }
+
+        void put(long key, ColumnSample s) {
+            map.put(key, s);
+            if (map.size() > capacity) {
+                Iterator<ColumnSample> eldest = map.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package me.mcp.terracity.core;
+
+/**
+ * Terrain data for the 16x16 columns of one chunk, computed once by {@link ColumnCache}
+ * and shared by noise, surface, biome and population stages.
+ * Arrays are indexed by {@code (lz << 4) | lx}.
+ */
+public final class ColumnSample {
+
+    public final long seed;
+    public final int chunkX;
+    public final int chunkZ;
+
+    /** City covering the chunk center (the one the chunk blends towards), or null. */
+    public final CityPlanner.City city;
+
+    final int[] naturalHeight = new int[256];
+    final int[] height = new int[256];
+    final double[] river = new double[256];
+    final double[] volcano = new double[256];
+    final double[] crater = new double[256];
+    final double[] temperature = new double[256];
+    final double[] humidity = new double[256];
+    final double[] cityBlend = new double[256];
+
+    /** What the city, volcano and river layers cover in this chunk (PARTIAL on scratch samples). */
+    Influence cityInfluence = Influence.PARTIAL;
+    Influence volcanoInfluence = Influence.PARTIAL;
+    Influence riverInfluence = Influence.PARTIAL;
+
+    /** Biome cells filled in lazily by {@link BiomeResolver}. */
+    volatile byte[] biomeCells;
+
+    ColumnSample(long seed, int chunkX, int chunkZ, CityPlanner.City city) {
+        this.seed = seed;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.city = city;
+    }
+
+    static int index(int lx, int lz) { return (lz << 4) | lx; }
+
+    /** Terrain height before city flattening. */
+    public int naturalHeight(int lx, int lz) { return naturalHeight[index(lx, lz)]; }
+
+    /** Final terrain height (city-blended, not clamped to world bounds). */
+    public int height(int lx, int lz) { return height[index(lx, lz)]; }
+
+    public double river(int lx, int lz) { return river[index(lx, lz)]; }
+
+    /** Volcano cone factor 0..1 (0 when no volcano covers the column). */
+    public double volcano(int lx, int lz) { return volcano[index(lx, lz)]; }
+
+    /** Volcano crater factor 0..1. */
+    public double crater(int lx, int lz) { return crater[index(lx, lz)]; }
+
+    public double temperature(int lx, int lz) { return temperature[index(lx, lz)]; }
+
+    public double humidity(int lx, int lz) { return humidity[index(lx, lz)]; }
+
+    public double cityBlend(int lx, int lz) { return cityBlend[index(lx, lz)]; }
+}
@@ -0,0 +1,76 @@
+package me.mcp.terracity.core;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Read-only view of the TerraCity configuration, addressed by the same dotted paths as config.yml.
+ * The Paper plugin backs this with its FileConfiguration; headless tools can use {@link #of(Map)}
+ * or {@link #defaults()}.
+ */
+public interface ConfigSource {
+
+    int getInt(String path, int def);
+
+    double getDouble(String path, double def);
+
+    boolean getBoolean(String path, boolean def);
+
+    String getString(String path, String def);
+
+    /** Names of the keys directly under {@code path} (a section), empty when there is none. */
+    Set<String> keys(String path);
+
+    /** Block name at {@code path}, or {@code fallback} when missing or not a known block. */
+    default TerraBlock getBlock(String path, TerraBlock fallback) {
+        String name = getString(path, null);
+        if (name == null || name.isBlank()) return fallback;
+        return TerraBlock.of(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /** Every key falls back to the built-in default. */
+    static ConfigSource defaults() {
+        return of(Map.of());
+    }
+
+    /** Immutable source over a flat map of dotted paths to values. */
+    static ConfigSource of(Map<String, ?> values) {
+        Map<String, Object> copy = Map.copyOf(values);
+        return new ConfigSource() {
+            @Override
+            public int getInt(String path, int def) {
+                return (copy.get(path) instanceof Number n) ? n.intValue() : def;
+            }
+
+            @Override
+            public double getDouble(String path, double def) {
+                return (copy.get(path) instanceof Number n) ? n.doubleValue() : def;
+            }
+
+            @Override
+            public boolean getBoolean(String path, boolean def) {
+                return (copy.get(path) instanceof Boolean b) ? b : def;
+            }
+
+            @Override
+            public String getString(String path, String def) {
+                Object v = copy.get(path);
+                return (v == null) ? def : v.toString();
+            }
+
+            @Override
+            public Set<String> keys(String path) {
+                String prefix = path + ".";
+                Set<String> out = new TreeSet<>();
+                for (String k : copy.keySet()) {
+                    if (!k.startsWith(prefix)) continue;
+                    int dot = k.indexOf('.', prefix.length());
+                    out.add((dot < 0) ? k.substring(prefix.length()) : k.substring(prefix.length(), dot));
+                }
+                return out;
+            }
+        };
+    }
+}
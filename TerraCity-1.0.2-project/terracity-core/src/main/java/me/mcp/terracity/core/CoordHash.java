@@ -0,0 +1,18 @@
+package me.mcp.terracity.core;
+
+/**
+ * The seed/x/z mixing hash behind cache keys and per-position random seeds. Callers that need
+ * another stream for the same position fold a salt into the seed first.
+ */
+public final class CoordHash {
+    private CoordHash(){}
+
+    public static long mix(long seed, int x, int z) {
+        long h = seed;
+        h ^= (long)x * 0x9E3779B97F4A7C15L;
+        h ^= (long)z * 0xC2B2AE3D27D4EB4FL;
+        h *= 0x165667B19E3779F9L;
+        h ^= (h >>> 32);
+        return h;
+    }
+}
@@ -0,0 +1,117 @@
+package me.mcp.terracity.core;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where generation time goes: a latency {@link Histogram} per pipeline stage plus plain
+ * counters. Recording is lock-free and cheap enough to stay on in production. One instance
+ * lives as long as the generator and is handed from engine to engine across reloads.
+ */
+public final class GenerationMetrics {
+
+    public enum Stage {
+        NOISE, SURFACE, BUILDINGS, TREES, BIOMES;
+
+        public String id() { return name().toLowerCase(Locale.ROOT); }
+    }
+
+    public enum Counter {
+        CHUNKS, BUILDINGS, TREES, TREES_REJECTED, BIOME_LOOKUPS,
+        /** Generated chunks by how much of them each layer covers (see {@link Influence}). */
+        CITY_INSIDE, CITY_PARTIAL, CITY_OUTSIDE,
+        VOLCANO_INSIDE, VOLCANO_PARTIAL, VOLCANO_OUTSIDE,
+        RIVER_OUTSIDE, RIVER_PARTIAL;
+
+        public String id() { return name().toLowerCase(Locale.ROOT); }
+    }
+
+    private final Histogram[] stages = new Histogram[Stage.values().length];
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+    private volatile long since = System.currentTimeMillis();
+
+    public GenerationMetrics() {
+        for (int i = 0; i < stages.length; i++) stages[i] = new Histogram();
+        for (int i = 0; i < counters.length; i++) counters[i] = new LongAdder();
+    }
+
+    /** Records one run of {@code stage} that started at {@code startNanos} ({@link System#nanoTime()}). */
+    public void time(Stage stage, long startNanos) {
+        stages[stage.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    public void add(Counter c, long n) { counters[c.ordinal()].add(n); }
+    public void increment(Counter c) { counters[c.ordinal()].increment(); }
+
+    public Histogram stage(Stage s) { return stages[s.ordinal()]; }
+    public long count(Counter c) { return counters[c.ordinal()].sum(); }
+
+    /** Wall-clock millis of the last {@link #reset()} (or creation). */
+    public long since() { return since; }
+
+    public void reset() {
+        for (Histogram h : stages) h.reset();
+        for (LongAdder a : counters) a.reset();
+        since = System.currentTimeMillis();
+    }
+
+    /** Prometheus text exposition (version 0.0.4) of these metrics and {@code caches}. */
+    public String prometheus(List<CacheStats> caches) {
+        StringBuilder sb = new StringBuilder(2048);
+        sb.append("# HELP terracity_stage_seconds Time spent per generation stage call.\n");
+        sb.append("# TYPE terracity_stage_seconds summary\n");
+        for (Stage s : Stage.values()) {
+            Histogram h = stage(s);
+            for (double q : new double[]{0.5, 0.9, 0.99}) {
+                sb.append("terracity_stage_seconds{stage=\"").append(s.id()).append("\",quantile=\"").append(q).append("\"} ")
+                        .append(seconds(h.percentile(q))).append('\n');
+            }
+            sb.append("terracity_stage_seconds_sum{stage=\"").append(s.id()).append("\"} ").append(seconds(h.sum())).append('\n');
+            sb.append("terracity_stage_seconds_count{stage=\"").append(s.id()).append("\"} ").append(h.count()).append('\n');
+        }
+        for (Counter c : Counter.values()) {
+            sb.append("# TYPE terracity_").append(c.id()).append("_total counter\n");
+            sb.append("terracity_").append(c.id()).append("_total ").append(count(c)).append('\n');
+        }
+        sb.append("# TYPE terracity_cache_hits_total counter\n");
+        for (CacheStats c : caches) sb.append("terracity_cache_hits_total{cache=\"").append(c.name()).append("\"} ").append(c.hits()).append('\n');
+        sb.append("# TYPE terracity_cache_misses_total counter\n");
+        for (CacheStats c : caches) sb.append("terracity_cache_misses_total{cache=\"").append(c.name()).append("\"} ").append(c.misses()).append('\n');
+        return sb.toString();
+    }
+
+    /** Column names matching {@link #csvRow(List)}. */
+    public static String csvHeader(List<CacheStats> caches) {
+        StringBuilder sb = new StringBuilder("time");
+        for (Stage s : Stage.values()) {
+            sb.append(',').append(s.id()).append("_count,").append(s.id()).append("_p50_us,")
+                    .append(s.id()).append("_p99_us,").append(s.id()).append("_mean_us");
+        }
+        for (Counter c : Counter.values()) sb.append(',').append(c.id());
+        for (CacheStats c : caches) sb.append(',').append(c.name()).append("_hit_rate");
+        return sb.toString();
+    }
+
+    public String csvRow(List<CacheStats> caches) {
+        StringBuilder sb = new StringBuilder().append(System.currentTimeMillis());
+        for (Stage s : Stage.values()) {
+            Histogram h = stage(s);
+            sb.append(',').append(h.count())
+                    .append(',').append(micros(h.percentile(0.5)))
+                    .append(',').append(micros(h.percentile(0.99)))
+                    .append(',').append(String.format(Locale.ROOT, "%.1f", h.mean() / 1000.0));
+        }
+        for (Counter c : Counter.values()) sb.append(',').append(count(c));
+        for (CacheStats c : caches) sb.append(',').append(String.format(Locale.ROOT, "%.4f", c.hitRate()));
+        return sb.toString();
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+    }
+}
@@ -0,0 +1,41 @@
+package me.mcp.terracity.core;
+
+import java.util.Locale;
+
+/**
+ * Generates a square of chunks without a server and prints throughput plus a checksum of the
+ * blocks, so output can be compared between builds.
+ * <p>
+ * {@code java -cp terracity-core.jar me.mcp.terracity.core.Headless [seed] [radiusChunks]}
+ * uses the built-in config defaults.
+ */
+public final class Headless {
+    private Headless(){}
+
+    public static void main(String[] args) {
+        long seed = (args.length > 0) ? Long.parseLong(args[0]) : 8_675_309L;
+        int radius = (args.length > 1) ? Math.max(0, Integer.parseInt(args[1])) : 8;
+
+        TerraCityEngine engine = new TerraCityEngine(TerraCitySettings.defaults());
+        ArrayBlockBuffer buf = new ArrayBlockBuffer(-64, 320);
+
+        long checksum = 0;
+        long writes = 0;
+        int chunks = 0;
+        long t0 = System.nanoTime();
+        for (int cz = -radius; cz <= radius; cz++) {
+            for (int cx = -radius; cx <= radius; cx++) {
+                buf.clear();
+                engine.generateNoise(seed, cx, cz, buf);
+                engine.generateSurface(seed, cx, cz, buf);
+                checksum = checksum * 31 + buf.checksum();
+                writes += buf.writes();
+                chunks++;
+            }
+        }
+        double secs = (System.nanoTime() - t0) / 1e9;
+
+        System.out.printf(Locale.ROOT, "%d chunks in %.2fs (%.1f chunks/s), %d writes/chunk, checksum %016x%n",
+                chunks, secs, chunks / secs, writes / chunks, checksum);
+    }
+}
@@ -0,0 +1,170 @@
+package me.mcp.terracity.core;
+
+/**
+ * Cheap stand-in for exact base heights, for the server's structure placement and locate
+ * searches, which ask for a few columns in each of thousands of chunks. Natural heights are
+ * sampled every {@link #STEP} blocks on {@link #TILE}-block tiles (cached per tile like cities
+ * and volcanoes) and bilinearly interpolated; the city blend is then applied per column exactly
+ * as {@link ColumnCache} does.
+ * <p>
+ * Interpolation is only used where it is provably close. Each cell gets a bound on its error
+ * from the slope limits of the noise ({@link TerrainSampler#latticeError}); cells whose bound
+ * exceeds {@link #MAX_ERROR} blocks, and cells a river or volcano can reach, are sampled
+ * exactly, one column per query. The city blend only pulls heights towards the city's, so it
+ * never widens the error. {@link #measure} reports the error and the share of exact cells for
+ * any seed and area.
+ * <p>
+ * With a level of detail above 0 every height the estimator samples (lattice nodes and the
+ * per-column fallback alike) leaves out that many of the finest terrain octaves, which makes
+ * tiles cheaper to build at the cost of accuracy: the error against exact generation can then
+ * grow by up to {@link TerrainSampler#lodError}.
+ */
+public final class HeightEstimator {
+
+    static final int STEP = 8;
+    static final int CELLS = 16;
+    static final int TILE = STEP * CELLS;
+    private static final int NODES = CELLS + 1;
+
+    /** Most blocks an estimate is off from exact generation, at level of detail 0. */
+    public static final int MAX_ERROR = 4;
+
+    /** Flattened relief per node plus, per cell, whether queries in it must be sampled exactly. */
+    private record Tile(double[] height, boolean[] exact) {}
+
+    private final TerrainSampler terrain;
+    private final CityPlanner planner;
+    private final int lod;
+    private final RegionCache<Tile> tiles = new RegionCache<>(512);
+
+    public HeightEstimator(TerrainSampler terrain, CityPlanner planner) {
+        this(terrain, planner, 0);
+    }
+
+    /** Estimator sampling with the {@code lod} finest terrain octaves left out. */
+    public HeightEstimator(TerrainSampler terrain, CityPlanner planner, int lod) {
+        this.terrain = terrain;
+        this.planner = planner;
+        this.lod = lod;
+    }
+
+    public int lod() { return lod; }
+
+    public CacheStats cacheStats() { return tiles.stats("height-tiles"); }
+
+    /** Estimated final terrain height (city-blended, not clamped) of the column. */
+    public int height(long seed, int x, int z) {
+        return blend(seed, x, z, naturalHeight(seed, x, z));
+    }
+
+    /**
+     * The column's final height as chunk generation makes it, from that column alone: what
+     * {@link #height} falls back to in cells it can't estimate, at level of detail 0.
+     */
+    public int exactHeight(long seed, int x, int z) {
+        return blend(seed, x, z, terrain.generatedHeight(seed, x, z, 0));
+    }
+
+    private int blend(long seed, int x, int z, int natural) {
+        CityPlanner.City city = planner.cityAt(seed, (x & ~15) + 8, (z & ~15) + 8, terrain, terrain.seaLevel());
+        if (city == null) return natural;
+        double t = planner.cityBlendFactor(city, x, z);
+        return (t > 0.0) ? (int)Math.round(natural + (city.baseHeight() - natural) * t) : natural;
+    }
+
+    int naturalHeight(long seed, int x, int z) {
+        int tx = Math.floorDiv(x, TILE), tz = Math.floorDiv(z, TILE);
+        RegionCache.Entry<Tile> e = tiles.lookup(seed, tx, tz);
+        Tile tile = (e != null) ? e.value() : tiles.store(seed, tx, tz, build(seed, tx, tz));
+
+        int lx = x - tx * TILE, lz = z - tz * TILE;
+        int cx = lx / STEP, cz = lz / STEP;
+        if (tile.exact[cz * CELLS + cx]) return terrain.generatedHeight(seed, x, z, lod);
+
+        double[] h = tile.height;
+        int n = cz * NODES + cx;
+        double fx = (lx - cx * STEP) / (double) STEP;
+        double fz = (lz - cz * STEP) / (double) STEP;
+        double top = h[n] + (h[n + 1] - h[n]) * fx;
+        double bottom = h[n + NODES] + (h[n + NODES + 1] - h[n + NODES]) * fx;
+        return (int)Math.round(top + (bottom - top) * fz);
+    }
+
+    private Tile build(long seed, int tx, int tz) {
+        int x0 = tx * TILE, z0 = tz * TILE;
+        TerrainSampler.LatticeNode[] nodes = new TerrainSampler.LatticeNode[NODES * NODES];
+        double[] height = new double[NODES * NODES];
+        for (int j = 0; j < NODES; j++) {
+            for (int i = 0; i < NODES; i++) {
+                int k = j * NODES + i;
+                nodes[k] = terrain.latticeNode(seed, x0 + i * STEP, z0 + j * STEP, lod);
+                height[k] = terrain.flatten(nodes[k].relief());
+            }
+        }
+
+        boolean volcano = terrain.volcanoInfluence(seed, x0, z0, TILE, TILE) != Influence.OUTSIDE;
+        boolean[] exact = new boolean[CELLS * CELLS];
+        for (int cz = 0; cz < CELLS; cz++) {
+            for (int cx = 0; cx < CELLS; cx++) {
+                int n = cz * NODES + cx;
+                double error = terrain.latticeError(seed, lod, STEP,
+                        nodes[n], nodes[n + 1], nodes[n + NODES], nodes[n + NODES + 1]);
+                exact[cz * CELLS + cx] = error >= MAX_ERROR + 1
+                        || (volcano && terrain.volcanoInfluence(seed, x0 + cx * STEP, z0 + cz * STEP, STEP, STEP) != Influence.OUTSIDE);
+            }
+        }
+        return new Tile(height, exact);
+    }
+
+    public record Report(int columns, int maxError, double meanError, double exactShare,
+                         double exactNanosPerQuery, double estimateNanosPerQuery) {
+
+        public double speedup() {
+            return (estimateNanosPerQuery <= 0.0) ? 0.0 : exactNanosPerQuery / estimateNanosPerQuery;
+        }
+    }
+
+    /**
+     * Error and cost of {@link #height} against exact column data, for one query per chunk (at a
+     * varying column, as structure searches do) over a square of chunks.
+     */
+    public Report measure(ColumnCache exact, long seed, int centerChunkX, int centerChunkZ, int radius) {
+        long exactNanos = 0, estimateNanos = 0, sumError = 0;
+        int maxError = 0, columns = 0;
+
+        for (int cz = centerChunkZ - radius; cz <= centerChunkZ + radius; cz++) {
+            for (int cx = centerChunkX - radius; cx <= centerChunkX + radius; cx++) {
+                int x = (cx << 4) + ((cx * 7 + cz * 3) & 15);
+                int z = (cz << 4) + ((cx * 5 + cz * 11) & 15);
+
+                long t0 = System.nanoTime();
+                int a = exact.compute(seed, cx, cz).height(x & 15, z & 15);
+                long t1 = System.nanoTime();
+                int b = height(seed, x, z);
+                long t2 = System.nanoTime();
+
+                exactNanos += t1 - t0;
+                estimateNanos += t2 - t1;
+                int err = Math.abs(a - b);
+                sumError += err;
+                maxError = Math.max(maxError, err);
+                columns++;
+            }
+        }
+
+        int exactCells = 0, cells = 0;
+        int t0x = Math.floorDiv((centerChunkX - radius) << 4, TILE), t1x = Math.floorDiv((centerChunkX + radius) << 4, TILE);
+        int t0z = Math.floorDiv((centerChunkZ - radius) << 4, TILE), t1z = Math.floorDiv((centerChunkZ + radius) << 4, TILE);
+        for (int tz = t0z; tz <= t1z; tz++) {
+            for (int tx = t0x; tx <= t1x; tx++) {
+                RegionCache.Entry<Tile> e = tiles.lookup(seed, tx, tz);
+                if (e == null) continue;
+                for (boolean x : e.value().exact) { cells++; if (x) exactCells++; }
+            }
+        }
+
+        return new Report(columns, maxError, sumError / (double) columns,
+                cells == 0 ? 0.0 : exactCells / (double) cells,
+                exactNanos / (double) columns, estimateNanos / (double) columns);
+    }
+}
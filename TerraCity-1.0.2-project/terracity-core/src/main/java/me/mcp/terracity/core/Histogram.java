@@ -0,0 +1,82 @@
+package me.mcp.terracity.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative longs (nanoseconds, here) with HDR-style log-linear
+ * buckets: 16 linear sub-buckets per power of two, so any recorded value is reported within
+ * about 6% of its true value, from 1 ns up to {@link Long#MAX_VALUE}, in a fixed 8 KB.
+ */
+public final class Histogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value)) m = max.get();
+    }
+
+    public long count() { return count.sum(); }
+    public long sum() { return sum.sum(); }
+    public long max() { return max.get(); }
+
+    public double mean() {
+        long n = count();
+        return n == 0 ? 0.0 : (double) sum() / n;
+    }
+
+    /**
+     * Value at quantile {@code q} (0..1), as the upper edge of the bucket it falls in (capped
+     * at the recorded maximum). 0 when nothing was recorded.
+     */
+    public long percentile(double q) {
+        long n = 0;
+        long[] snap = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) { snap[i] = counts.get(i); n += snap[i]; }
+        if (n == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(1.0, Math.max(0.0, q)) * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snap[i];
+            if (seen >= rank) return Math.min(max(), upper(i));
+        }
+        return max();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    static int index(long v) {
+        if (v < SUB) return (int) v;
+        int e = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (e - SUB_BITS)) & (SUB - 1);
+        return (e - SUB_BITS + 1) * SUB + sub;
+    }
+
+    /** Largest value that maps to bucket {@code i}. */
+    static long upper(int i) {
+        if (i < SUB) return i;
+        int e = i / SUB + SUB_BITS - 1;
+        long lower = (long) (SUB + (i % SUB)) << (e - SUB_BITS);
+        long width = 1L << (e - SUB_BITS);
+        return lower + width - 1 < 0 ? Long.MAX_VALUE : lower + width - 1;
+    }
+}
@@ -0,0 +1,29 @@
+package me.mcp.terracity.core;
+
+/**
+ * How much of a chunk a city, volcano or river can touch, decided once per chunk from its
+ * bounds so the column loops can skip a layer or treat it as constant.
+ */
+public enum Influence {
+    /** The layer is zero on every column. */
+    OUTSIDE,
+    /** Some columns may be affected; they are evaluated one by one. */
+    PARTIAL,
+    /** Every column is covered (a city at full blend, one volcano's cone over the whole chunk). */
+    INSIDE;
+
+    /**
+     * Classifies the block square [x0, x0 + w) x [z0, z0 + h) by squared distance to (cx, cz):
+     * INSIDE when every column is within {@code innerSq}, OUTSIDE when none is closer than
+     * {@code outerSq}, else PARTIAL. Integer math, so the answer matches the per-column checks.
+     */
+    static Influence of(int cx, int cz, long innerSq, long outerSq, int x0, int z0, int w, int h) {
+        long nx = Math.max(0, Math.max(x0 - cx, cx - (x0 + w - 1)));
+        long nz = Math.max(0, Math.max(z0 - cz, cz - (z0 + h - 1)));
+        if (nx * nx + nz * nz >= outerSq) return OUTSIDE;
+
+        long fx = Math.max(Math.abs(x0 - cx), Math.abs(x0 + w - 1 - cx));
+        long fz = Math.max(Math.abs(z0 - cz), Math.abs(z0 + h - 1 - cz));
+        return (fx * fx + fz * fz <= innerSq) ? INSIDE : PARTIAL;
+    }
+}
@@ -0,0 +1,61 @@
+package me.mcp.terracity.core;
+
+/**
+ * Compares lattice-interpolated terrain heights against exact per-column sampling over a square
+ * of chunks, so server owners can judge the accuracy / speed trade-off of {@code terrain.lattice}.
+ */
+public final class LatticeFidelity {
+    private LatticeFidelity(){}
+
+    public record Report(int lattice, int chunks, int maxError, double meanError,
+                         double exactShare, double within2Share,
+                         double exactMicrosPerChunk, double latticeMicrosPerChunk) {
+
+        public double speedup() {
+            return (latticeMicrosPerChunk <= 0.0) ? 0.0 : exactMicrosPerChunk / latticeMicrosPerChunk;
+        }
+    }
+
+    public static Report run(TerrainSampler terrain, long seed, int centerChunkX, int centerChunkZ, int radius, int lattice) {
+        int[] exact = new int[256];
+        int[] approx = new int[256];
+
+        long exactNanos = 0;
+        long latticeNanos = 0;
+        long sumError = 0;
+        int maxError = 0;
+        int exactCols = 0;
+        int within2 = 0;
+        int chunks = 0;
+
+        for (int cz = centerChunkZ - radius; cz <= centerChunkZ + radius; cz++) {
+            for (int cx = centerChunkX - radius; cx <= centerChunkX + radius; cx++) {
+                int x0 = cx << 4;
+                int z0 = cz << 4;
+
+                long t0 = System.nanoTime();
+                terrain.heightGrid(seed, x0, z0, 16, 16, exact, null, 0);
+                long t1 = System.nanoTime();
+                terrain.heightGrid(seed, x0, z0, 16, 16, approx, null, lattice);
+                long t2 = System.nanoTime();
+
+                exactNanos += t1 - t0;
+                latticeNanos += t2 - t1;
+                chunks++;
+
+                for (int k = 0; k < 256; k++) {
+                    int e = Math.abs(exact[k] - approx[k]);
+                    sumError += e;
+                    if (e > maxError) maxError = e;
+                    if (e == 0) exactCols++;
+                    if (e <= 2) within2++;
+                }
+            }
+        }
+
+        double cols = chunks * 256.0;
+        return new Report(lattice, chunks, maxError, sumError / cols,
+                exactCols / cols, within2 / cols,
+                exactNanos / 1000.0 / chunks, latticeNanos / 1000.0 / chunks);
+    }
+}
@@ -0,0 +1,44 @@
+package me.mcp.terracity.core;
+
+/** {@link NoiseEngine} over the static {@link Noise2D}, so existing worlds generate unchanged. */
+final class LegacyNoise implements NoiseEngine {
+
+    static final LegacyNoise INSTANCE = new LegacyNoise();
+
+    private LegacyNoise() {}
+
+    @Override public Kind kind() { return Kind.LEGACY; }
+
+    @Override
+    public double noise(long seed, double x, double z) {
+        return Noise2D.noise(seed, x, z);
+    }
+
+    @Override
+    public double noiseWithDerivatives(long seed, double x, double z, double[] out) {
+        return Noise2D.noiseWithDerivatives(seed, x, z, out);
+    }
+
+    // Exact maximum over every corner gradient set
+    @Override public double maxValue() { return 1.0; }
+
+    // 2.75 found the same way, with margin
+    @Override public double maxSlope() { return 2.8; }
+
+    @Override
+    public double fbm(long seed, double x, double z, int octaves, double lacunarity, double gain) {
+        return Noise2D.fbm(seed, x, z, octaves, lacunarity, gain);
+    }
+
+    @Override
+    public double fbmWithDerivatives(long seed, double x, double z, int octaves, double lacunarity, double gain,
+                                     double[] out) {
+        return Noise2D.fbmWithDerivatives(seed, x, z, octaves, lacunarity, gain, out);
+    }
+
+    @Override
+    public void fbmGrid(double[] out, long seed, int x0, int z0, int step, int w, int h,
+                        double scale, int octaves, double lacunarity, double gain) {
+        Noise2D.fbmGrid(out, seed, x0, z0, step, w, h, scale, octaves, lacunarity, gain);
+    }
+}
@@ -0,0 +1,275 @@
+package me.mcp.terracity.core;
+
+public final class Noise2D {
+    private Noise2D(){}
+
+    public static double noise(long seed, double x, double z) {
+        int x0 = fastFloor(x);
+        int z0 = fastFloor(z);
+
+        double xf = x - x0;
+        double zf = z - z0;
+
+        double u = fade(xf);
+        double v = fade(zf);
+
+        double n00 = grad(hash(seed, x0, z0), xf, zf);
+        double n10 = grad(hash(seed, x0 + 1, z0), xf - 1, zf);
+        double n01 = grad(hash(seed, x0, z0 + 1), xf, zf - 1);
+        double n11 = grad(hash(seed, x0 + 1, z0 + 1), xf - 1, zf - 1);
+
+        double nx0 = lerp(n00, n10, u);
+        double nx1 = lerp(n01, n11, u);
+        return lerp(nx0, nx1, v);
+    }
+
+    public static double fbm(long seed, double x, double z, int octaves, double lacunarity, double gain) {
+        double amp = 1.0;
+        double freq = 1.0;
+        double sum = 0.0;
+        double norm = 0.0;
+
+        for (int i = 0; i < octaves; i++) {
+            sum += noise(seed + i * 1013L, x * freq, z * freq) * amp;
+            norm += amp;
+            amp *= gain;
+            freq *= lacunarity;
+        }
+        return (norm == 0.0) ? 0.0 : (sum / norm);
+    }
+
+    /**
+     * {@link #noise} together with its partial derivatives from the same lattice lookups:
+     * {@code out[0]} = value, {@code out[1]} = d/dx, {@code out[2]} = d/dz. Returns the value,
+     * which is identical to {@code noise(seed, x, z)}.
+     */
+    public static double noiseWithDerivatives(long seed, double x, double z, double[] out) {
+        int x0 = fastFloor(x);
+        int z0 = fastFloor(z);
+
+        double xf = x - x0;
+        double zf = z - z0;
+
+        double u = fade(xf);
+        double v = fade(zf);
+        double du = fadeDerivative(xf);
+        double dv = fadeDerivative(zf);
+
+        int g00 = (int)(hash(seed, x0, z0) & 7);
+        int g10 = (int)(hash(seed, x0 + 1, z0) & 7);
+        int g01 = (int)(hash(seed, x0, z0 + 1) & 7);
+        int g11 = (int)(hash(seed, x0 + 1, z0 + 1) & 7);
+
+        double n00 = grad(g00, xf, zf);
+        double n10 = grad(g10, xf - 1, zf);
+        double n01 = grad(g01, xf, zf - 1);
+        double n11 = grad(g11, xf - 1, zf - 1);
+
+        double nx0 = lerp(n00, n10, u);
+        double nx1 = lerp(n01, n11, u);
+        double value = lerp(nx0, nx1, v);
+
+        // each corner term is linear in (x, z) with the gradient vector as slope
+        double dx0 = GX[g00] + (GX[g10] - GX[g00]) * u + (n10 - n00) * du;
+        double dx1 = GX[g01] + (GX[g11] - GX[g01]) * u + (n11 - n01) * du;
+        double dz0 = GZ[g00] + (GZ[g10] - GZ[g00]) * u;
+        double dz1 = GZ[g01] + (GZ[g11] - GZ[g01]) * u;
+
+        out[0] = value;
+        out[1] = dx0 + (dx1 - dx0) * v;
+        out[2] = dz0 + (dz1 - dz0) * v + (nx1 - nx0) * dv;
+        return value;
+    }
+
+    /**
+     * {@link #fbm} with derivatives, same layout as {@link #noiseWithDerivatives}. Derivatives
+     * are with respect to the (x, z) passed in, so multiply by the caller's coordinate scale to
+     * get per-block slopes.
+     */
+    public static double fbmWithDerivatives(long seed, double x, double z, int octaves, double lacunarity, double gain,
+                                            double[] out) {
+        double amp = 1.0;
+        double freq = 1.0;
+        double sum = 0.0, sumX = 0.0, sumZ = 0.0;
+        double norm = 0.0;
+
+        for (int i = 0; i < octaves; i++) {
+            sum += noiseWithDerivatives(seed + i * 1013L, x * freq, z * freq, out) * amp;
+            sumX += out[1] * amp * freq;
+            sumZ += out[2] * amp * freq;
+            norm += amp;
+            amp *= gain;
+            freq *= lacunarity;
+        }
+
+        if (norm == 0.0) {
+            out[0] = out[1] = out[2] = 0.0;
+            return 0.0;
+        }
+        out[0] = sum / norm;
+        out[1] = sumX / norm;
+        out[2] = sumZ / norm;
+        return out[0];
+    }
+
+    /**
+     * Evaluates {@link #fbm} over a w*h grid of block columns in one pass:
+     * {@code out[j * w + i] = fbm(seed, (x0 + i*step) * scale, (z0 + j*step) * scale, ...)}.
+     * Results are identical to the scalar call for the same block coordinates (up to the sign of zero),
+     * but lattice coordinates, fades and corner hashes are computed once per row/column and reused
+     * between neighbouring samples that fall into the same lattice cell.
+     */
+    public static void fbmGrid(double[] out, long seed, int x0, int z0, int step, int w, int h,
+                               double scale, int octaves, double lacunarity, double gain) {
+        int n = w * h;
+        for (int k = 0; k < n; k++) out[k] = 0.0;
+
+        double amp = 1.0;
+        double freq = 1.0;
+        double norm = 0.0;
+
+        for (int o = 0; o < octaves; o++) {
+            accumulateOctave(out, seed + o * 1013L, x0, z0, step, w, h, scale, freq, amp);
+            norm += amp;
+            amp *= gain;
+            freq *= lacunarity;
+        }
+
+        if (norm == 0.0) return;
+        for (int k = 0; k < n; k++) out[k] = out[k] / norm;
+    }
+
+    /** {@link #noise} over a grid, same layout as {@link #fbmGrid}. */
+    public static void noiseGrid(double[] out, long seed, int x0, int z0, int step, int w, int h, double scale) {
+        int n = w * h;
+        for (int k = 0; k < n; k++) out[k] = 0.0;
+        accumulateOctave(out, seed, x0, z0, step, w, h, scale, 1.0, 1.0);
+    }
+
+    // out[j*w+i] += noise(seed, ((x0+i*step)*scale)*freq, ((z0+j*step)*scale)*freq) * amp
+    private static void accumulateOctave(double[] out, long seed, int x0, int z0, int step, int w, int h,
+                                         double scale, double freq, double amp) {
+        GridScratch g = SCRATCH.get().ensure(w);
+        int[] cx = g.cell;
+        double[] fx = g.frac;
+        double[] ux = g.fade;
+        long[] hx0 = g.hashLo;
+        long[] hx1 = g.hashHi;
+
+        for (int i = 0; i < w; i++) {
+            double x = ((double)(x0 + i * step) * scale) * freq;
+            int xi = fastFloor(x);
+            cx[i] = xi;
+            fx[i] = x - xi;
+            ux[i] = fade(fx[i]);
+            hx0[i] = xi * 0x9E3779B97F4A7C15L;
+            hx1[i] = (xi + 1) * 0x9E3779B97F4A7C15L;
+        }
+
+        for (int j = 0; j < h; j++) {
+            double z = ((double)(z0 + j * step) * scale) * freq;
+            int zi = fastFloor(z);
+            double zf = z - zi;
+            double v = fade(zf);
+            long hz0 = seed ^ (zi * 0xC2B2AE3D27D4EB4FL);
+            long hz1 = seed ^ ((zi + 1) * 0xC2B2AE3D27D4EB4FL);
+
+            int row = j * w;
+            int lastCell = 0;
+            int g00 = 0, g10 = 0, g01 = 0, g11 = 0;
+
+            for (int i = 0; i < w; i++) {
+                if (i == 0 || cx[i] != lastCell) {
+                    lastCell = cx[i];
+                    g00 = (int)(finish(hz0 ^ hx0[i]) & 7);
+                    g10 = (int)(finish(hz0 ^ hx1[i]) & 7);
+                    g01 = (int)(finish(hz1 ^ hx0[i]) & 7);
+                    g11 = (int)(finish(hz1 ^ hx1[i]) & 7);
+                }
+
+                double xf = fx[i];
+                double n00 = GX[g00] * xf + GZ[g00] * zf;
+                double n10 = GX[g10] * (xf - 1) + GZ[g10] * zf;
+                double n01 = GX[g01] * xf + GZ[g01] * (zf - 1);
+                double n11 = GX[g11] * (xf - 1) + GZ[g11] * (zf - 1);
+
+                double u = ux[i];
+                double nx0 = n00 + (n10 - n00) * u;
+                double nx1 = n01 + (n11 - n01) * u;
+                out[row + i] += (nx0 + (nx1 - nx0) * v) * amp;
+            }
+        }
+    }
+
+    private static int fastFloor(double d) {
+        int i = (int)d;
+        return d < i ? i - 1 : i;
+    }
+
+    private static double fade(double t) {
+        return t * t * t * (t * (t * 6 - 15) + 10);
+    }
+
+    private static double fadeDerivative(double t) {
+        return 30.0 * t * t * (t * (t - 2.0) + 1.0);
+    }
+
+    private static double lerp(double a, double b, double t) {
+        return a + (b - a) * t;
+    }
+
+    private static long hash(long seed, int x, int z) {
+        long h = seed;
+        h ^= x * 0x9E3779B97F4A7C15L;
+        h ^= z * 0xC2B2AE3D27D4EB4FL;
+        h *= 0x165667B19E3779F9L;
+        h ^= (h >>> 32);
+        return h;
+    }
+
+    // Second half of hash(): callers pre-xor seed, x and z terms.
+    private static long finish(long h) {
+        h *= 0x165667B19E3779F9L;
+        h ^= (h >>> 32);
+        return h;
+    }
+
+    private static double grad(long h, double x, double z) {
+        int b = (int)(h & 7);
+        return switch (b) {
+            case 0 ->  x + z;
+            case 1 ->  x - z;
+            case 2 -> -x + z;
+            case 3 -> -x - z;
+            case 4 ->  x;
+            case 5 -> -x;
+            case 6 ->  z;
+            default -> -z;
+        };
+    }
+
+    // grad() as coefficient tables, so grid loops stay branch-free.
+    private static final double[] GX = { 1,  1, -1, -1,  1, -1,  0,  0 };
+    private static final double[] GZ = { 1, -1,  1, -1,  0,  0,  1, -1 };
+
+    private static final ThreadLocal<GridScratch> SCRATCH = ThreadLocal.withInitial(GridScratch::new);
+
+    private static final class GridScratch {
+        int[] cell = new int[0];
+        double[] frac = new double[0];
+        double[] fade = new double[0];
+        long[] hashLo = new long[0];
+        long[] hashHi = new long[0];
+
+        GridScratch ensure(int w) {
+            if (cell.length < w) {
+                cell = new int[w];
+                frac = new double[w];
+                fade = new double[w];
+                hashLo = new long[w];
+                hashHi = new long[w];
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package me.mcp.terracity.core;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Renders the same square of terrain with every {@link NoiseEngine} and compares each against
+ * {@link NoiseEngine.Kind#LEGACY}, to pick the fastest engine that still looks right.
+ * <p>
+ * {@code java -cp terracity-core.jar me.mcp.terracity.core.NoiseComparison [seed] [sizeBlocks] [outDir]}
+ * writes {@code <engine>.png} (shaded heightmap, rivers and sea), {@code diff-<engine>.png}
+ * (height difference to legacy, blue lower / red higher) and {@code compare.png} (all side by side)
+ * around 0, 0 with the built-in config defaults, and prints per engine the height pass time and
+ * how its height, ocean, river and slope statistics differ from legacy. Other engines hash the
+ * lattice differently and share no landmarks with legacy, so judge them by the statistics more
+ * than by the diff.
+ */
+public final class NoiseComparison {
+    private NoiseComparison(){}
+
+    public record Report(NoiseEngine.Kind kind, double microsPerChunk, double meanHeight, double stdHeight,
+                         double oceanShare, double riverShare, double meanSlope, double meanDiff,
+                         double distributionDistance) {}
+
+    public static void main(String[] args) throws IOException {
+        long seed = (args.length > 0) ? Long.parseLong(args[0]) : 8_675_309L;
+        int size = (args.length > 1) ? Math.max(16, Integer.parseInt(args[1]) & ~15) : 1024;
+        Path dir = Path.of((args.length > 2) ? args[2] : "noise-comparison");
+        Files.createDirectories(dir);
+
+        NoiseEngine.Kind[] kinds = NoiseEngine.Kind.values();
+        int[][] heights = new int[kinds.length][];
+        double[][] rivers = new double[kinds.length][];
+        double[] micros = new double[kinds.length];
+        TerrainSampler legacy = null;
+        for (NoiseEngine.Kind k : kinds) {
+            ConfigSource config = ConfigSource.of(Map.of("generation.noise", k.id()));
+            TerrainSampler terrain = new TerrainSampler(TerraCitySettings.from(config));
+            if (k == NoiseEngine.Kind.LEGACY) legacy = terrain;
+            heights[k.ordinal()] = new int[size * size];
+            rivers[k.ordinal()] = new double[size * size];
+            render(terrain, seed, size, heights[k.ordinal()], rivers[k.ordinal()]); // builds tables, warms up
+            micros[k.ordinal()] = time(terrain, seed, size);
+        }
+
+        int sea = legacy.seaLevel();
+        int[] base = heights[NoiseEngine.Kind.LEGACY.ordinal()];
+        BufferedImage strip = new BufferedImage(size * kinds.length, size, BufferedImage.TYPE_INT_RGB);
+        System.out.printf(Locale.ROOT, "%-13s %9s %7s %6s %6s %6s %6s %8s %6s%n",
+                "engine", "us/chunk", "mean", "std", "ocean", "river", "slope", "|diff|", "dist");
+        for (NoiseEngine.Kind k : kinds) {
+            int[] h = heights[k.ordinal()];
+            BufferedImage img = shade(h, rivers[k.ordinal()], size, sea);
+            ImageIO.write(img, "png", dir.resolve(k.id() + ".png").toFile());
+            ImageIO.write(diff(base, h, size), "png", dir.resolve("diff-" + k.id() + ".png").toFile());
+            strip.getGraphics().drawImage(img, k.ordinal() * size, 0, null);
+
+            Report r = report(k, micros[k.ordinal()], base, h, rivers[k.ordinal()], size, sea);
+            System.out.printf(Locale.ROOT, "%-13s %9.1f %7.1f %6.1f %5.1f%% %5.1f%% %6.3f %8.2f %6.3f%n",
+                    k.id(), r.microsPerChunk(), r.meanHeight(), r.stdHeight(), r.oceanShare() * 100.0,
+                    r.riverShare() * 100.0, r.meanSlope(), r.meanDiff(), r.distributionDistance());
+        }
+        ImageIO.write(strip, "png", dir.resolve("compare.png").toFile());
+        System.out.println("Images in " + dir.toAbsolutePath());
+    }
+
+    /**
+     * Statistics of {@code h} next to {@code base}: mean |difference| per column, and the largest
+     * gap between the two height distributions (0 = same share of every height, 1 = disjoint).
+     */
+    static Report report(NoiseEngine.Kind kind, double micros, int[] base, int[] h, double[] river, int size, int sea) {
+        int n = h.length;
+        double sum = 0, sumSq = 0, diff = 0, slope = 0;
+        int ocean = 0, wet = 0;
+        for (int k = 0; k < n; k++) {
+            sum += h[k];
+            sumSq += (double) h[k] * h[k];
+            diff += Math.abs(h[k] - base[k]);
+            if (h[k] < sea) ocean++;
+            if (river[k] > 0.55 && h[k] >= sea - 2) wet++;
+            if ((k % size) + 1 < size) slope += Math.abs(h[k + 1] - h[k]);
+        }
+        double mean = sum / n;
+
+        int[] a = base.clone(), b = h.clone();
+        Arrays.sort(a);
+        Arrays.sort(b);
+        double dist = 0;
+        for (int i = 0, j = 0; i < n || j < n; ) {
+            int v = Math.min(i < n ? a[i] : Integer.MAX_VALUE, j < n ? b[j] : Integer.MAX_VALUE);
+            while (i < n && a[i] == v) i++;
+            while (j < n && b[j] == v) j++;
+            dist = Math.max(dist, Math.abs(i - j) / (double) n);
+        }
+
+        return new Report(kind, micros, mean, Math.sqrt(Math.max(0.0, sumSq / n - mean * mean)),
+                ocean / (double) n, wet / (double) n, slope / ((size - 1.0) * size), diff / n, dist);
+    }
+
+    private static void render(TerrainSampler terrain, long seed, int size, int[] heights, double[] rivers) {
+        int[] h = new int[256];
+        double[] r = new double[256];
+        int half = size / 2;
+        for (int cz = 0; cz < size; cz += 16) {
+            for (int cx = 0; cx < size; cx += 16) {
+                terrain.heightGrid(seed, cx - half, cz - half, 16, 16, h);
+                terrain.riverMaskGrid(seed, cx - half, cz - half, 16, 16, r);
+                for (int k = 0; k < 256; k++) {
+                    int at = (cz + (k >> 4)) * size + cx + (k & 15);
+                    heights[at] = h[k];
+                    rivers[at] = r[k];
+                }
+            }
+        }
+    }
+
+    // Best of three height passes over the square, per chunk
+    private static double time(TerrainSampler terrain, long seed, int size) {
+        int[] h = new int[256];
+        int half = size / 2;
+        long best = Long.MAX_VALUE;
+        for (int pass = 0; pass < 3; pass++) {
+            long t0 = System.nanoTime();
+            for (int cz = 0; cz < size; cz += 16) {
+                for (int cx = 0; cx < size; cx += 16) terrain.heightGrid(seed, cx - half, cz - half, 16, 16, h);
+            }
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        return best / 1000.0 / ((size / 16) * (size / 16));
+    }
+
+    private static BufferedImage shade(int[] h, double[] river, int size, int sea) {
+        BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                int k = z * size + x;
+                int west = (x > 0) ? h[k - 1] : h[k], north = (z > 0) ? h[k - size] : h[k];
+                double light = clamp01(0.75 + 0.08 * ((h[k] - west) + (h[k] - north)));
+                int rgb;
+                if (h[k] < sea) {
+                    double d = clamp01((sea - h[k]) / 40.0);
+                    rgb = rgb(0.15 - 0.1 * d, 0.35 - 0.2 * d, 0.75 - 0.3 * d);
+                } else if (river[k] > 0.55 && h[k] >= sea - 2) {
+                    rgb = rgb(0.2, 0.45, 0.85);
+                } else {
+                    double t = clamp01((h[k] - sea) / 100.0);
+                    rgb = rgb(light * (0.30 + 0.6 * t), light * (0.55 + 0.35 * t), light * (0.25 + 0.65 * t));
+                }
+                img.setRGB(x, z, rgb);
+            }
+        }
+        return img;
+    }
+
+    private static BufferedImage diff(int[] base, int[] h, int size) {
+        BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        for (int k = 0; k < h.length; k++) {
+            double d = clamp01(Math.abs(h[k] - base[k]) / 32.0);
+            img.setRGB(k % size, k / size, (h[k] >= base[k]) ? rgb(1.0, 1.0 - d, 1.0 - d) : rgb(1.0 - d, 1.0 - d, 1.0));
+        }
+        return img;
+    }
+
+    private static int rgb(double r, double g, double b) {
+        return ((int) (clamp01(r) * 255) << 16) | ((int) (clamp01(g) * 255) << 8) | (int) (clamp01(b) * 255);
+    }
+
+    private static double clamp01(double v) {
+        return Math.max(0.0, Math.min(1.0, v));
+    }
+}
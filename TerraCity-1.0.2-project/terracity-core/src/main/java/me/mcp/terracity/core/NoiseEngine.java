@@ -0,0 +1,110 @@
+package me.mcp.terracity.core;
+
+import java.util.Locale;
+
+/**
+ * Gradient noise behind every terrain and climate layer, chosen per world ({@code generation.noise},
+ * {@code generation.noise-worlds}). Engines share {@link Noise2D}'s conventions (octave {@code i}
+ * of an fbm uses seed {@code seed + i * 1013}, values roughly in [-1, 1]), so only the look of the
+ * terrain changes between them, not its scales.
+ * <p>
+ * {@link Kind#LEGACY} is {@link Noise2D} itself and keeps existing worlds identical.
+ */
+public interface NoiseEngine {
+
+    enum Kind {
+        /** {@link Noise2D}: Perlin noise hashing every lattice corner. */
+        LEGACY,
+        /** Perlin noise with the same gradients, hashed through per-seed permutation tables. */
+        PERMUTATION,
+        /** OpenSimplex2 noise: no square-grid artifacts, different terrain. */
+        OPENSIMPLEX2;
+
+        public static Kind parse(String name, Kind fallback) {
+            if (name == null) return fallback;
+            return switch (name.trim().toLowerCase(Locale.ROOT)) {
+                case "legacy" -> LEGACY;
+                case "permutation" -> PERMUTATION;
+                case "opensimplex2", "opensimplex" -> OPENSIMPLEX2;
+                default -> fallback;
+            };
+        }
+
+        public String id() { return name().toLowerCase(Locale.ROOT); }
+
+        /** A fresh engine. Table engines key their tables by seed, so one can serve every world. */
+        public NoiseEngine create() {
+            return switch (this) {
+                case LEGACY -> LegacyNoise.INSTANCE;
+                case PERMUTATION -> new PermutationNoise();
+                case OPENSIMPLEX2 -> new OpenSimplexNoise();
+            };
+        }
+    }
+
+    Kind kind();
+
+    double noise(long seed, double x, double z);
+
+    /** Value and partial derivatives: {@code out[0]} = value, {@code out[1]} = d/dx, {@code out[2]} = d/dz. */
+    double noiseWithDerivatives(long seed, double x, double z, double[] out);
+
+    /** Upper bound of |{@link #noise}|. */
+    double maxValue();
+
+    /** Upper bound of the length of {@link #noise}'s gradient, per unit of input. */
+    double maxSlope();
+
+    default double fbm(long seed, double x, double z, int octaves, double lacunarity, double gain) {
+        double amp = 1.0;
+        double freq = 1.0;
+        double sum = 0.0;
+        double norm = 0.0;
+
+        for (int i = 0; i < octaves; i++) {
+            sum += noise(seed + i * 1013L, x * freq, z * freq) * amp;
+            norm += amp;
+            amp *= gain;
+            freq *= lacunarity;
+        }
+        return (norm == 0.0) ? 0.0 : (sum / norm);
+    }
+
+    /** {@link #fbm} with derivatives, as {@link Noise2D#fbmWithDerivatives}. */
+    default double fbmWithDerivatives(long seed, double x, double z, int octaves, double lacunarity, double gain,
+                                      double[] out) {
+        double amp = 1.0;
+        double freq = 1.0;
+        double sum = 0.0, sumX = 0.0, sumZ = 0.0;
+        double norm = 0.0;
+
+        for (int i = 0; i < octaves; i++) {
+            sum += noiseWithDerivatives(seed + i * 1013L, x * freq, z * freq, out) * amp;
+            sumX += out[1] * amp * freq;
+            sumZ += out[2] * amp * freq;
+            norm += amp;
+            amp *= gain;
+            freq *= lacunarity;
+        }
+
+        if (norm == 0.0) {
+            out[0] = out[1] = out[2] = 0.0;
+            return 0.0;
+        }
+        out[0] = sum / norm;
+        out[1] = sumX / norm;
+        out[2] = sumZ / norm;
+        return out[0];
+    }
+
+    /** {@link #fbm} over a grid, same layout and coordinates as {@link Noise2D#fbmGrid}. */
+    default void fbmGrid(double[] out, long seed, int x0, int z0, int step, int w, int h,
+                         double scale, int octaves, double lacunarity, double gain) {
+        for (int j = 0; j < h; j++) {
+            double z = (double)(z0 + j * step) * scale;
+            for (int i = 0; i < w; i++) {
+                out[j * w + i] = fbm(seed, (double)(x0 + i * step) * scale, z, octaves, lacunarity, gain);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package me.mcp.terracity.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Structures that cross chunk borders, split by the chunks they touch. A structure is planned
+ * once (for every chunk it overlaps) before any of those chunks generates; each chunk then
+ * stamps its own slice during its surface stage and drops it, so a structure is gone from the
+ * store once its last chunk is done. Nothing is ever written into a neighbouring chunk.
+ * <p>
+ * Slices for chunks that never generate (or generated in an earlier run) would stay forever,
+ * so the store is cleared if it ever holds {@link #MAX_CHUNKS} chunks; the owners are then
+ * planned again on their next use. Planning and taking a chunk's slice happen under one lock,
+ * so a clear can never fall between them and leave the chunk without its slice.
+ */
+final class PendingWrites {
+
+    private static final int MAX_CHUNKS = 16384;
+
+    /** A template stamped with its origin at world (x, y, z). */
+    record Placement(BlockTemplate template, int x, int y, int z) {}
+
+    private record Key(long seed, int x, int z) {}
+
+    // Guarded by this
+    private final Map<Key, List<Placement>> byChunk = new HashMap<>();
+    private final Set<Key> planned = new HashSet<>();
+
+    /**
+     * Stamps and forgets the chunk's slices of the structures of an owner (e.g. a city, by its
+     * center), first registering {@code placements} for every chunk they overlap unless the owner
+     * already did. Returns how many of the stamped structures have their origin in this chunk,
+     * so each structure is counted once.
+     */
+    int apply(long seed, int ownerX, int ownerZ, Supplier<List<Placement>> placements,
+              int chunkX, int chunkZ, BlockBuffer data) {
+        List<Placement> slices;
+        synchronized (this) {
+            Key owner = new Key(seed, ownerX, ownerZ);
+            if (!planned.contains(owner)) {
+                if (byChunk.size() >= MAX_CHUNKS) {
+                    byChunk.clear();
+                    planned.clear();
+                }
+                plan(seed, placements.get());
+                planned.add(owner);
+            }
+            slices = byChunk.remove(new Key(seed, chunkX, chunkZ));
+        }
+        if (slices == null) return 0;
+
+        int origins = 0;
+        for (Placement p : slices) {
+            p.template.stamp(data, p.x - (chunkX << 4), p.y, p.z - (chunkZ << 4));
+            if (p.x >> 4 == chunkX && p.z >> 4 == chunkZ) origins++;
+        }
+        return origins;
+    }
+
+    private void plan(long seed, List<Placement> placements) {
+        for (Placement p : placements) {
+            BlockTemplate t = p.template;
+            for (int cz = (p.z + t.minZ()) >> 4; cz <= (p.z + t.maxZ()) >> 4; cz++) {
+                for (int cx = (p.x + t.minX()) >> 4; cx <= (p.x + t.maxX()) >> 4; cx++) {
+                    byChunk.computeIfAbsent(new Key(seed, cx, cz), k -> new ArrayList<>(2)).add(p);
+                }
+            }
+        }
+    }
+
+    /** Chunks with slices still to apply. */
+    synchronized int size() { return byChunk.size(); }
+}
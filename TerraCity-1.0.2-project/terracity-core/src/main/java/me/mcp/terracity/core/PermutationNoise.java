@@ -0,0 +1,222 @@
+package me.mcp.terracity.core;
+
+/**
+ * Perlin noise with {@link Noise2D}'s gradients and fade curve, but lattice corners are hashed
+ * through a permutation table per seed instead of three 64-bit multiplies each. Every octave of
+ * every layer has its own seed, so each gets its own table; a world needs a couple of dozen,
+ * built on first use (the first chunk) and kept for as long as the engine lives.
+ * <p>
+ * Tables have {@value #SIZE} entries, so a single octave repeats every {@value #SIZE} lattice
+ * cells (over 200k blocks for the base terrain layer); octaves have different tables, so their
+ * sum does not.
+ */
+final class PermutationNoise implements NoiseEngine {
+
+    private static final int SIZE = 1024;
+    private static final int MASK = SIZE - 1;
+
+    private static final double[] GX = { 1,  1, -1, -1,  1, -1,  0,  0 };
+    private static final double[] GZ = { 1, -1,  1, -1,  0,  0,  1, -1 };
+
+    /** The gradient of lattice point (x, z) is {@code grad[(perm[x & MASK] + z) & MASK]}. */
+    private static final class Table {
+        final long seed;
+        final int[] perm = new int[SIZE];
+        final byte[] grad = new byte[SIZE];
+
+        Table(long seed) {
+            this.seed = seed;
+            TerraRandom r = new TerraRandom(TerraRandom.Mode.FAST, seed);
+            for (int i = 0; i < SIZE; i++) perm[i] = i;
+            for (int i = SIZE - 1; i > 0; i--) {
+                int j = r.nextInt(i + 1);
+                int t = perm[i];
+                perm[i] = perm[j];
+                perm[j] = t;
+            }
+            for (int i = 0; i < SIZE; i++) grad[i] = (byte) r.nextInt(8);
+        }
+    }
+
+    // Open-addressed by seed, copied on insert; lookups never lock
+    private volatile Table[] tables = new Table[64];
+    private int count;
+
+    @Override public Kind kind() { return Kind.PERMUTATION; }
+
+    // Same gradients and interpolation as Noise2D, so the same bounds
+    @Override public double maxValue() { return 1.0; }
+    @Override public double maxSlope() { return 2.8; }
+
+    @Override
+    public double noise(long seed, double x, double z) {
+        Table t = table(seed);
+        int x0 = fastFloor(x);
+        int z0 = fastFloor(z);
+        double xf = x - x0;
+        double zf = z - z0;
+
+        int p0 = t.perm[x0 & MASK], p1 = t.perm[(x0 + 1) & MASK];
+        int g00 = t.grad[(p0 + z0) & MASK], g01 = t.grad[(p0 + z0 + 1) & MASK];
+        int g10 = t.grad[(p1 + z0) & MASK], g11 = t.grad[(p1 + z0 + 1) & MASK];
+
+        double n00 = GX[g00] * xf + GZ[g00] * zf;
+        double n10 = GX[g10] * (xf - 1) + GZ[g10] * zf;
+        double n01 = GX[g01] * xf + GZ[g01] * (zf - 1);
+        double n11 = GX[g11] * (xf - 1) + GZ[g11] * (zf - 1);
+
+        double u = fade(xf);
+        double nx0 = n00 + (n10 - n00) * u;
+        double nx1 = n01 + (n11 - n01) * u;
+        return nx0 + (nx1 - nx0) * fade(zf);
+    }
+
+    @Override
+    public double noiseWithDerivatives(long seed, double x, double z, double[] out) {
+        Table t = table(seed);
+        int x0 = fastFloor(x);
+        int z0 = fastFloor(z);
+        double xf = x - x0;
+        double zf = z - z0;
+
+        double u = fade(xf), v = fade(zf);
+        double du = fadeDerivative(xf), dv = fadeDerivative(zf);
+
+        int p0 = t.perm[x0 & MASK], p1 = t.perm[(x0 + 1) & MASK];
+        int g00 = t.grad[(p0 + z0) & MASK], g01 = t.grad[(p0 + z0 + 1) & MASK];
+        int g10 = t.grad[(p1 + z0) & MASK], g11 = t.grad[(p1 + z0 + 1) & MASK];
+
+        double n00 = GX[g00] * xf + GZ[g00] * zf;
+        double n10 = GX[g10] * (xf - 1) + GZ[g10] * zf;
+        double n01 = GX[g01] * xf + GZ[g01] * (zf - 1);
+        double n11 = GX[g11] * (xf - 1) + GZ[g11] * (zf - 1);
+
+        double nx0 = n00 + (n10 - n00) * u;
+        double nx1 = n01 + (n11 - n01) * u;
+        double value = nx0 + (nx1 - nx0) * v;
+
+        double dx0 = GX[g00] + (GX[g10] - GX[g00]) * u + (n10 - n00) * du;
+        double dx1 = GX[g01] + (GX[g11] - GX[g01]) * u + (n11 - n01) * du;
+        double dz0 = GZ[g00] + (GZ[g10] - GZ[g00]) * u;
+        double dz1 = GZ[g01] + (GZ[g11] - GZ[g01]) * u;
+
+        out[0] = value;
+        out[1] = dx0 + (dx1 - dx0) * v;
+        out[2] = dz0 + (dz1 - dz0) * v + (nx1 - nx0) * dv;
+        return value;
+    }
+
+    @Override
+    public void fbmGrid(double[] out, long seed, int x0, int z0, int step, int w, int h,
+                        double scale, int octaves, double lacunarity, double gain) {
+        int n = w * h;
+        for (int k = 0; k < n; k++) out[k] = 0.0;
+
+        int[] cell = new int[w];
+        double[] frac = new double[w];
+        double[] fade = new double[w];
+
+        double amp = 1.0;
+        double freq = 1.0;
+        double norm = 0.0;
+        for (int o = 0; o < octaves; o++) {
+            Table t = table(seed + o * 1013L);
+
+            for (int i = 0; i < w; i++) {
+                double x = ((double)(x0 + i * step) * scale) * freq;
+                cell[i] = fastFloor(x);
+                frac[i] = x - cell[i];
+                fade[i] = fade(frac[i]);
+            }
+
+            for (int j = 0; j < h; j++) {
+                double z = ((double)(z0 + j * step) * scale) * freq;
+                int zi = fastFloor(z);
+                double zf = z - zi;
+                double v = fade(zf);
+
+                int row = j * w;
+                int last = 0;
+                int g00 = 0, g10 = 0, g01 = 0, g11 = 0;
+                for (int i = 0; i < w; i++) {
+                    if (i == 0 || cell[i] != last) {
+                        last = cell[i];
+                        int p0 = t.perm[last & MASK], p1 = t.perm[(last + 1) & MASK];
+                        g00 = t.grad[(p0 + zi) & MASK];
+                        g01 = t.grad[(p0 + zi + 1) & MASK];
+                        g10 = t.grad[(p1 + zi) & MASK];
+                        g11 = t.grad[(p1 + zi + 1) & MASK];
+                    }
+
+                    double xf = frac[i];
+                    double n00 = GX[g00] * xf + GZ[g00] * zf;
+                    double n10 = GX[g10] * (xf - 1) + GZ[g10] * zf;
+                    double n01 = GX[g01] * xf + GZ[g01] * (zf - 1);
+                    double n11 = GX[g11] * (xf - 1) + GZ[g11] * (zf - 1);
+
+                    double u = fade[i];
+                    double nx0 = n00 + (n10 - n00) * u;
+                    double nx1 = n01 + (n11 - n01) * u;
+                    out[row + i] += (nx0 + (nx1 - nx0) * v) * amp;
+                }
+            }
+            norm += amp;
+            amp *= gain;
+            freq *= lacunarity;
+        }
+
+        if (norm == 0.0) return;
+        for (int k = 0; k < n; k++) out[k] = out[k] / norm;
+    }
+
+    private Table table(long seed) {
+        Table[] t = tables;
+        int mask = t.length - 1;
+        for (int i = slot(seed) & mask; ; i = (i + 1) & mask) {
+            Table e = t[i];
+            if (e == null) return add(seed);
+            if (e.seed == seed) return e;
+        }
+    }
+
+    private synchronized Table add(long seed) {
+        Table[] t = tables;
+        int mask = t.length - 1;
+        for (int i = slot(seed) & mask; t[i] != null; i = (i + 1) & mask) {
+            if (t[i].seed == seed) return t[i]; // another thread added it meanwhile
+        }
+
+        Table added = new Table(seed);
+        Table[] next = new Table[(count + 1) * 2 > t.length ? t.length * 2 : t.length];
+        for (Table e : t) if (e != null) insert(next, e);
+        insert(next, added);
+        count++;
+        tables = next;
+        return added;
+    }
+
+    private static void insert(Table[] t, Table e) {
+        int mask = t.length - 1;
+        int i = slot(e.seed) & mask;
+        while (t[i] != null) i = (i + 1) & mask;
+        t[i] = e;
+    }
+
+    private static int slot(long seed) {
+        long h = seed * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+    private static int fastFloor(double d) {
+        int i = (int)d;
+        return d < i ? i - 1 : i;
+    }
+
+    private static double fade(double t) {
+        return t * t * t * (t * (t * 6 - 15) + 10);
+    }
+
+    private static double fadeDerivative(double t) {
+        return 30.0 * t * t * (t * (t - 2.0) + 1.0);
+    }
+}
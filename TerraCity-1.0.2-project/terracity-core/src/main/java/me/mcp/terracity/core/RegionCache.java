@@ -0,0 +1,57 @@
+package me.mcp.terracity.core;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free, fixed-size cache of per-region values keyed by (seed, regionX, regionZ).
+ * Direct-mapped: each key has exactly one slot, and a colliding region simply replaces it.
+ * Null values ("nothing in this region") are cached like any other result.
+ */
+final class RegionCache<T> {
+
+    record Entry<T>(long seed, int regionX, int regionZ, T value) {}
+
+    private final AtomicReferenceArray<Entry<T>> slots;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    RegionCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity - 1) << 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /** The cached entry for the region, or null on a miss. A hit may still carry a null value. */
+    Entry<T> lookup(long seed, int regionX, int regionZ) {
+        Entry<T> e = slots.get(slot(seed, regionX, regionZ));
+        if (e != null && e.seed == seed && e.regionX == regionX && e.regionZ == regionZ) {
+            hits.increment();
+            return e;
+        }
+        misses.increment();
+        return null;
+    }
+
+    CacheStats stats(String name) {
+        return new CacheStats(name, hits.sum(), misses.sum());
+    }
+
+    /**
+     * Stores a resolved value and returns it. Values must be deterministic per key, so a
+     * duplicate resolve by a concurrent thread is harmless.
+     */
+    T store(long seed, int regionX, int regionZ, T value) {
+        slots.set(slot(seed, regionX, regionZ), new Entry<>(seed, regionX, regionZ, value));
+        return value;
+    }
+
+    void clear() {
+        for (int i = 0; i < slots.length(); i++) slots.set(i, null);
+    }
+
+    private int slot(long seed, int regionX, int regionZ) {
+        return (int)CoordHash.mix(seed, regionX, regionZ) & mask;
+    }
+}
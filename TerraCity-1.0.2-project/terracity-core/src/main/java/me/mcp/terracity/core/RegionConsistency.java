@@ -0,0 +1,78 @@
+package me.mcp.terracity.core;
+
+/**
+ * Checks whether a 512x512 block region (one Minecraft region file) generated by one engine
+ * would come out differently with another, by comparing heights, biomes and city placement on
+ * a coarse grid of sample columns. When only street or building settings changed, a region is
+ * inconsistent when any of its columns belongs to a city. Used after a reload to tell which
+ * existing regions no longer match the config.
+ */
+public final class RegionConsistency {
+    private RegionConsistency(){}
+
+    public static final int REGION_BLOCKS = 512;
+
+    /** Sample columns per region axis (every 64 blocks, offset into the middle of a chunk). */
+    private static final int SAMPLES = 8;
+
+    public record Result(int regionX, int regionZ, boolean terrain, boolean biomes, boolean cities) {
+        public boolean consistent() { return !terrain && !biomes && !cities; }
+    }
+
+    public static Result check(TerraCityEngine before, TerraCityEngine after, long seed, int regionX, int regionZ) {
+        boolean sameTerrain = before.getTerrain() == after.getTerrain();
+        boolean samePlan = before.getPlanner() == after.getPlanner();
+        boolean sameColumns = before.getColumns() == after.getColumns();
+        boolean sameLayout = TerraCitySettings.sameCityLayout(before.getSettings(), after.getSettings());
+
+        boolean terrain = false, biomes = false, cities = false;
+        if (!sameColumns) {
+            int step = REGION_BLOCKS / SAMPLES;
+            int x0 = regionX * REGION_BLOCKS + step / 2 + 8;
+            int z0 = regionZ * REGION_BLOCKS + step / 2 + 8;
+            int seaBefore = before.getTerrain().seaLevel();
+            int seaAfter = after.getTerrain().seaLevel();
+
+            scan:
+            for (int j = 0; j < SAMPLES; j++) {
+                for (int i = 0; i < SAMPLES; i++) {
+                    int x = x0 + i * step;
+                    int z = z0 + j * step;
+
+                    // Exact column heights: baseHeight may be an estimate
+                    if (!terrain && !sameTerrain && exactHeight(before, seed, x, z) != exactHeight(after, seed, x, z)) {
+                        terrain = true;
+                    }
+                    if (!biomes && biome(before, seed, x, z) != biome(after, seed, x, z)) {
+                        biomes = true;
+                    }
+                    if (!cities && !samePlan) {
+                        CityPlanner.City a = before.getPlanner().cityAt(seed, x, z, before.getTerrain(), seaBefore);
+                        CityPlanner.City b = after.getPlanner().cityAt(seed, x, z, after.getTerrain(), seaAfter);
+                        if (a == null ? b != null : !a.equals(b)) cities = true;
+                    }
+                    if ((terrain || sameTerrain) && biomes && (cities || samePlan)) break scan;
+                }
+            }
+        }
+        if (!cities && !sameLayout) {
+            int x0 = regionX * REGION_BLOCKS, z0 = regionZ * REGION_BLOCKS;
+            cities = hasCity(before, seed, x0, z0) || hasCity(after, seed, x0, z0);
+        }
+        return new Result(regionX, regionZ, terrain, biomes, cities);
+    }
+
+    private static boolean hasCity(TerraCityEngine engine, long seed, int x0, int z0) {
+        return engine.getPlanner().anyCity(seed, x0, z0, REGION_BLOCKS, REGION_BLOCKS,
+                engine.getTerrain(), engine.getTerrain().seaLevel());
+    }
+
+    private static int exactHeight(TerraCityEngine engine, long seed, int x, int z) {
+        return engine.getColumns().at(seed, x, z).height(x & 15, z & 15);
+    }
+
+    // From the columns, not biomeAt: the scan must not read or fill either engine's region cache
+    private static int biome(TerraCityEngine engine, long seed, int x, int z) {
+        return engine.getBiomes().biomeGrid(seed, x >> 4, z >> 4)[(((z & 15) >> 2) << 2) | ((x & 15) >> 2)];
+    }
+}
@@ -0,0 +1,301 @@
+package me.mcp.terracity.core;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Persistent per-region copy of what {@link ColumnCache} derives from noise: one memory-mapped
+ * file per 512x512-block region ({@code <dir>/<seed>/r.X.Z.tcr}) holding, per chunk, the final
+ * heightmap, the river mask, the 4x4 biome cells and the city and volcano records. Reads go
+ * straight to the mapped buffer, so base-height and biome lookups for chunks seen in an earlier
+ * run (or by another tool) need no noise at all.
+ * <p>
+ * The file header carries the seed and a {@link #fingerprint(TerraCitySettings) fingerprint} of
+ * the settings the data came from; a file written with other settings is wiped on open, and a
+ * mapped file whose header another store has since rewritten is dropped. Chunk slots are
+ * published with a release write of their state word, so a reader never sees a half-written
+ * chunk. I/O failures disable the affected region and are reported once. A store replaced by
+ * a reload must be {@link #close() closed}, or it would remap and wipe the new store's files.
+ */
+public final class RegionStore {
+
+    private static final int MAGIC = 0x54435243; // "TCRC"
+    private static final int VERSION = 1;
+
+    private static final int REGION_SHIFT = 5; // 32x32 chunks = 512 blocks
+    private static final int CHUNKS_PER_SIDE = 1 << REGION_SHIFT;
+    private static final int CHUNKS = CHUNKS_PER_SIDE * CHUNKS_PER_SIDE;
+
+    private static final int HEADER_BYTES = 64;
+    private static final int STATE = 0;              // int, 0 = empty, 1 = stored
+    private static final int HEIGHTS = 4;            // short[256]
+    private static final int RIVER = HEIGHTS + 512;  // byte[256], mask * 255
+    private static final int BIOMES = RIVER + 256;   // byte[16], TerraBiome ordinals
+    private static final int CITY = BIOMES + 16;     // int centerX, centerZ, radius, blend, baseHeight
+    private static final int VOLCANO = CITY + 20;    // int cx, cz, radius, craterRadius
+    private static final int CHUNK_BYTES = 832;      // a CITY/VOLCANO radius of 0 means none
+    private static final long FILE_BYTES = HEADER_BYTES + (long) CHUNKS * CHUNK_BYTES;
+
+    /** Returned by {@link #height} when the chunk is not stored. */
+    public static final int MISSING = Integer.MIN_VALUE;
+
+    private static final int MAX_OPEN = 256;
+
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private record Region(long seed, int regionX, int regionZ, int epoch, MappedByteBuffer buf) {}
+
+    private final Path dir;
+    private final long fingerprint;
+    private final Consumer<String> warn;
+    private final ConcurrentHashMap<Long, Region> open = new ConcurrentHashMap<>();
+    // Lookups come in runs over one region, so skip the map while the region doesn't change
+    private final ThreadLocal<Region> last = new ThreadLocal<>();
+    // Bumped whenever open regions are dropped, so no thread keeps using one through last
+    private volatile int epoch;
+    private volatile boolean closed;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public RegionStore(Path dir, long fingerprint, Consumer<String> warn) {
+        this.dir = dir;
+        this.fingerprint = fingerprint;
+        this.warn = warn;
+    }
+
+    public Path directory() { return dir; }
+
+    /**
+     * Stable hash of every setting that feeds the stored layers (noise engines, terrain, oceans,
+     * rivers, volcanoes, city placement and climate). Unlike the records' own hash codes it does not
+     * change between runs.
+     */
+    public static long fingerprint(TerraCitySettings s) {
+        TerraCitySettings.City c = s.city();
+        String key = VERSION + "|" + s.seedSalt() + "|" + s.random().name() + noiseKey(s) + "|" + s.terrain()
+                + "|" + s.ocean() + "|" + s.rivers() + "|" + s.volcano() + "|" + s.biomes() + "|" + c.enabled() + "," + c.regionSize()
+                + "," + c.chance() + "," + c.radius() + "," + c.blend() + "," + c.baseHeightMin();
+        long h = 0xCBF29CE484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    // Empty for the default legacy noise, so existing cache files stay valid
+    private static String noiseKey(TerraCitySettings s) {
+        if (s.noise() == NoiseEngine.Kind.LEGACY && s.worldNoise().isEmpty()) return "";
+        StringBuilder b = new StringBuilder("|").append(s.noise().id());
+        new TreeMap<>(s.worldNoise()).forEach((world, kind) -> b.append(',').append(world).append('=').append(kind.id()));
+        return b.toString();
+    }
+
+    public CacheStats stats() {
+        return new CacheStats("region-files", hits.sum(), misses.sum());
+    }
+
+    /** Whether the chunk has been stored (does not count towards the hit rate). */
+    public boolean contains(long seed, int chunkX, int chunkZ) {
+        Region r = region(seed, chunkX, chunkZ);
+        return r != null && stored(r, slot(chunkX, chunkZ));
+    }
+
+    /** Final terrain height of the column, or {@link #MISSING}. */
+    public int height(long seed, int x, int z) {
+        int chunkX = x >> 4, chunkZ = z >> 4;
+        Region r = region(seed, chunkX, chunkZ);
+        int at = slot(chunkX, chunkZ);
+        if (r == null || !stored(r, at)) {
+            misses.increment();
+            return MISSING;
+        }
+        hits.increment();
+        return r.buf.getShort(at + HEIGHTS + 2 * ColumnSample.index(x & 15, z & 15));
+    }
+
+    /** {@link TerraBiome} ordinal of the column's biome cell, or -1. */
+    public int biome(long seed, int x, int z) {
+        int chunkX = x >> 4, chunkZ = z >> 4;
+        Region r = region(seed, chunkX, chunkZ);
+        int at = slot(chunkX, chunkZ);
+        if (r == null || !stored(r, at)) {
+            misses.increment();
+            return -1;
+        }
+        hits.increment();
+        return r.buf.get(at + BIOMES + ((((z & 15) >> 2) << 2) | ((x & 15) >> 2)));
+    }
+
+    /** River mask of the column quantized to 0..255, or -1. */
+    public int river(long seed, int x, int z) {
+        int chunkX = x >> 4, chunkZ = z >> 4;
+        Region r = region(seed, chunkX, chunkZ);
+        int at = slot(chunkX, chunkZ);
+        if (r == null || !stored(r, at)) return -1;
+        return r.buf.get(at + RIVER + ColumnSample.index(x & 15, z & 15)) & 0xFF;
+    }
+
+    /** The chunk's city, or null when there is none or the chunk is not stored. */
+    public CityPlanner.City city(long seed, int chunkX, int chunkZ) {
+        Region r = region(seed, chunkX, chunkZ);
+        int at = slot(chunkX, chunkZ);
+        if (r == null || !stored(r, at)) return null;
+        MappedByteBuffer b = r.buf;
+        int radius = b.getInt(at + CITY + 8);
+        if (radius == 0) return null;
+        return new CityPlanner.City(b.getInt(at + CITY), b.getInt(at + CITY + 4), radius,
+                b.getInt(at + CITY + 12), b.getInt(at + CITY + 16));
+    }
+
+    /** The volcano of the region around the chunk center, or null. */
+    public TerrainSampler.Volcano volcano(long seed, int chunkX, int chunkZ) {
+        Region r = region(seed, chunkX, chunkZ);
+        int at = slot(chunkX, chunkZ);
+        if (r == null || !stored(r, at)) return null;
+        MappedByteBuffer b = r.buf;
+        int radius = b.getInt(at + VOLCANO + 8);
+        if (radius == 0) return null;
+        return new TerrainSampler.Volcano(b.getInt(at + VOLCANO), b.getInt(at + VOLCANO + 4), radius,
+                b.getInt(at + VOLCANO + 12));
+    }
+
+    /**
+     * Stores a chunk's layers unless it is already there. The data is deterministic per chunk,
+     * so concurrent puts of the same chunk write identical bytes.
+     */
+    public void put(ColumnSample cols, byte[] biomeCells, TerrainSampler.Volcano volcano) {
+        Region r = region(cols.seed, cols.chunkX, cols.chunkZ);
+        int at = slot(cols.chunkX, cols.chunkZ);
+        if (r == null || stored(r, at)) return;
+
+        MappedByteBuffer b = r.buf;
+        for (int i = 0; i < 256; i++) {
+            b.putShort(at + HEIGHTS + 2 * i, (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, cols.height[i])));
+            b.put(at + RIVER + i, (byte) Math.round(Math.max(0.0, Math.min(1.0, cols.river[i])) * 255.0));
+        }
+        b.put(at + BIOMES, biomeCells);
+
+        CityPlanner.City c = cols.city;
+        b.putInt(at + CITY, c == null ? 0 : c.centerX());
+        b.putInt(at + CITY + 4, c == null ? 0 : c.centerZ());
+        b.putInt(at + CITY + 8, c == null ? 0 : c.radius());
+        b.putInt(at + CITY + 12, c == null ? 0 : c.blend());
+        b.putInt(at + CITY + 16, c == null ? 0 : c.baseHeight());
+
+        b.putInt(at + VOLCANO, volcano == null ? 0 : volcano.cx());
+        b.putInt(at + VOLCANO + 4, volcano == null ? 0 : volcano.cz());
+        b.putInt(at + VOLCANO + 8, volcano == null ? 0 : volcano.radius());
+        b.putInt(at + VOLCANO + 12, volcano == null ? 0 : volcano.craterRadius());
+
+        if (current(r)) INTS.setRelease(b, at + STATE, 1);
+    }
+
+    /** Writes dirty pages back to disk and drops the open regions (they are remapped on next use). */
+    public synchronized void flush() {
+        for (Region r : open.values()) {
+            if (r.buf != null) r.buf.force();
+        }
+        evict();
+    }
+
+    /**
+     * Flushes and stops using the files for good: later lookups miss and puts are dropped. Call
+     * when a reload replaces this store, so it never remaps a file the new one has taken over.
+     */
+    public synchronized void close() {
+        closed = true;
+        flush();
+    }
+
+    private synchronized void evict() {
+        open.clear();
+        epoch++;
+    }
+
+    private static boolean stored(Region r, int at) {
+        return (int) INTS.getAcquire(r.buf, at + STATE) == 1;
+    }
+
+    private static int slot(int chunkX, int chunkZ) {
+        int i = ((chunkZ & (CHUNKS_PER_SIDE - 1)) << REGION_SHIFT) | (chunkX & (CHUNKS_PER_SIDE - 1));
+        return HEADER_BYTES + i * CHUNK_BYTES;
+    }
+
+    private Region region(long seed, int chunkX, int chunkZ) {
+        int rx = chunkX >> REGION_SHIFT, rz = chunkZ >> REGION_SHIFT;
+        Region r = last.get();
+        if (r == null || r.epoch != epoch || r.seed != seed || r.regionX != rx || r.regionZ != rz) {
+            long key = key(seed, rx, rz);
+            r = open.get(key);
+            if (r == null) r = mapRegion(key, seed, rx, rz);
+            if (r == null || r.seed != seed || r.regionX != rx || r.regionZ != rz) return null;
+            last.set(r);
+        }
+        // A failed mapping (I/O error) stays as a placeholder so the region isn't retried every call
+        if (r.buf == null) return null;
+        if (!current(r)) {
+            // Taken over by a store with other settings; remap (and wipe) on the next lookup
+            open.remove(key(seed, rx, rz), r);
+            last.remove();
+            return null;
+        }
+        return r;
+    }
+
+    // Mapping is rare, so it shares the lock with eviction and close: nothing is mapped after close
+    private synchronized Region mapRegion(long key, long seed, int rx, int rz) {
+        if (closed) return null;
+        Region r = open.get(key);
+        if (r != null) return r;
+        if (open.size() >= MAX_OPEN) evict();
+        r = map(seed, rx, rz);
+        open.put(key, r);
+        return r;
+    }
+
+    private boolean current(Region r) {
+        MappedByteBuffer b = r.buf;
+        return b.getInt(0) == MAGIC && b.getLong(8) == r.seed && b.getLong(16) == fingerprint;
+    }
+
+    private Region map(long seed, int rx, int rz) {
+        Path file = dir.resolve(Long.toHexString(seed)).resolve("r." + rx + "." + rz + ".tcr");
+        try {
+            Files.createDirectories(file.getParent());
+            MappedByteBuffer buf;
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, FILE_BYTES);
+            }
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+
+            boolean valid = buf.getInt(0) == MAGIC && buf.getInt(4) == VERSION && buf.getLong(8) == seed
+                    && buf.getLong(16) == fingerprint && buf.getInt(24) == rx && buf.getInt(28) == rz;
+            if (!valid) {
+                for (int i = 0; i < CHUNKS; i++) INTS.setRelease(buf, HEADER_BYTES + i * CHUNK_BYTES + STATE, 0);
+                buf.putInt(4, VERSION).putLong(8, seed).putLong(16, fingerprint).putInt(24, rx).putInt(28, rz);
+                buf.putInt(0, MAGIC);
+            }
+            return new Region(seed, rx, rz, epoch, buf);
+        } catch (IOException | UnsupportedOperationException e) {
+            warn.accept("Region cache " + file + " unavailable: " + e.getMessage());
+            return new Region(seed, rx, rz, epoch, null);
+        }
+    }
+
+    private static long key(long seed, int regionX, int regionZ) {
+        return CoordHash.mix(seed, regionX, regionZ);
+    }
+}
@@ -0,0 +1,36 @@
+package me.mcp.terracity.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Side table carrying each chunk's top-solid heightmap from the noise stage to the surface
+ * stage, so surface and building placement don't have to scan columns from the build limit
+ * down. Entries are taken (removed) by the surface stage; the table is cleared if it ever
+ * fills up with chunks whose surface pass never came (e.g. after a reload swapped engines).
+ */
+final class SurfaceHeights {
+
+    private static final int MAX_PENDING = 4096;
+
+    private record Entry(long seed, int chunkX, int chunkZ, int[] top) {}
+
+    private final ConcurrentHashMap<Long, Entry> pending = new ConcurrentHashMap<>();
+
+    void put(long seed, int chunkX, int chunkZ, int[] top) {
+        if (pending.size() >= MAX_PENDING) pending.clear();
+        pending.put(key(seed, chunkX, chunkZ), new Entry(seed, chunkX, chunkZ, top));
+    }
+
+    /** The heightmap recorded for the chunk (indexed {@code (lz << 4) | lx}), or null. */
+    int[] take(long seed, int chunkX, int chunkZ) {
+        long k = key(seed, chunkX, chunkZ);
+        Entry e = pending.get(k);
+        if (e == null || e.seed != seed || e.chunkX != chunkX || e.chunkZ != chunkZ) return null;
+        pending.remove(k, e);
+        return e.top;
+    }
+
+    private static long key(long seed, int chunkX, int chunkZ) {
+        return CoordHash.mix(seed, chunkX, chunkZ);
+    }
+}
@@ -0,0 +1,89 @@
+package me.mcp.terracity.core;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads {@link BlockTemplate}s from a small text format:
+ * <pre>
+ * name: small-shed
+ * origin: 2 1 0          # block (x, y, z) in the layers below that lands on the anchor
+ * key: P = OAK_PLANKS
+ * key: . = AIR
+ * layer                  # bottom layer first; one row per z, one character per x
+ * PPPPP
+ * P...P
+ * layer
+ * PPPPP
+ * </pre>
+ * A space or {@code -} means "leave the world as it is"; blank lines are ignored, so an empty
+ * row inside a layer is written as dashes. Anything after {@code #} is a comment. Errors are
+ * reported as {@link IllegalArgumentException} with the source name and line number.
+ */
+public final class TemplateFormat {
+    private TemplateFormat(){}
+
+    public static BlockTemplate parse(String source, List<String> lines) {
+        String name = source;
+        int ox = 0, oy = 0, oz = 0;
+        Map<Character, TerraBlock> keys = new HashMap<>();
+        BlockTemplate.Builder b = null;
+        int y = -1, z = 0;
+
+        for (int n = 0; n < lines.size(); n++) {
+            String raw = lines.get(n);
+            int hash = raw.indexOf('#');
+            String line = hash >= 0 ? raw.substring(0, hash) : raw;
+            String at = source + ":" + (n + 1) + ": ";
+
+            if (b != null && !line.isBlank() && !line.trim().equals("layer")) {
+                for (int x = 0; x < line.length(); x++) {
+                    char c = line.charAt(x);
+                    if (c == ' ' || c == '-') continue;
+                    TerraBlock block = keys.get(c);
+                    if (block == null) throw new IllegalArgumentException(at + "no key for '" + c + "'");
+                    b.set(x - ox, y - oy, z - oz, block);
+                }
+                z++;
+                continue;
+            }
+
+            String t = line.trim();
+            if (t.isEmpty()) continue;
+
+            if (t.equals("layer")) {
+                if (b == null) b = new BlockTemplate.Builder(name);
+                y++;
+                z = 0;
+            } else if (b != null) {
+                throw new IllegalArgumentException(at + "header line after the first 'layer'");
+            } else if (t.startsWith("name:")) {
+                name = t.substring(5).trim();
+            } else if (t.startsWith("origin:")) {
+                String[] p = t.substring(7).trim().split("\\s+");
+                if (p.length != 3) throw new IllegalArgumentException(at + "origin needs x y z");
+                try {
+                    ox = Integer.parseInt(p[0]);
+                    oy = Integer.parseInt(p[1]);
+                    oz = Integer.parseInt(p[2]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(at + "origin needs x y z");
+                }
+            } else if (t.startsWith("key:")) {
+                String[] p = t.substring(4).split("=", 2);
+                String c = p[0].trim();
+                if (p.length != 2 || c.length() != 1) throw new IllegalArgumentException(at + "key needs 'C = BLOCK'");
+                keys.put(c.charAt(0), TerraBlock.of(p[1].trim().toUpperCase(Locale.ROOT)));
+            } else {
+                throw new IllegalArgumentException(at + "unknown line '" + t + "'");
+            }
+        }
+
+        if (b == null) throw new IllegalArgumentException(source + ": no layers");
+        BlockTemplate out = b.build();
+        if (out.size() == 0) throw new IllegalArgumentException(source + ": template is empty");
+        return out;
+    }
+}
@@ -0,0 +1,67 @@
+package me.mcp.terracity.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * User-supplied structure variants, read from {@code templates/buildings/*.tpl} and
+ * {@code templates/trees/*.tpl} (see {@link TemplateFormat}). Building templates are anchored
+ * on the plot corner one block above the ground, tree templates on the trunk base.
+ */
+public record TemplateSet(List<BlockTemplate> buildings, List<BlockTemplate> trees) {
+
+    public static final TemplateSet EMPTY = new TemplateSet(List.of(), List.of());
+
+    public TemplateSet {
+        buildings = List.copyOf(buildings);
+        trees = List.copyOf(trees);
+    }
+
+    public boolean isEmpty() {
+        return buildings.isEmpty() && trees.isEmpty();
+    }
+
+    /**
+     * Loads every template under {@code dir}. Files that fail to parse, or use a block that
+     * {@code validBlock} rejects, are skipped with a message to {@code warn}.
+     */
+    public static TemplateSet load(File dir, Predicate<TerraBlock> validBlock, Consumer<String> warn) {
+        return new TemplateSet(
+                loadDir(new File(dir, "buildings"), validBlock, warn),
+                loadDir(new File(dir, "trees"), validBlock, warn));
+    }
+
+    private static List<BlockTemplate> loadDir(File dir, Predicate<TerraBlock> validBlock, Consumer<String> warn) {
+        File[] files = dir.listFiles((d, n) -> n.endsWith(".tpl"));
+        if (files == null) return List.of();
+        Arrays.sort(files); // stable order, so the same files always give the same world
+
+        List<BlockTemplate> out = new ArrayList<>();
+        for (File f : files) {
+            try {
+                BlockTemplate t = TemplateFormat.parse(dir.getName() + "/" + f.getName(),
+                        Files.readAllLines(f.toPath(), StandardCharsets.UTF_8));
+                String bad = null;
+                for (int i = 0; i < t.size() && bad == null; i++) {
+                    TerraBlock b = BlockTemplate.block(t.cell(i));
+                    if (!validBlock.test(b)) bad = b.name();
+                }
+                if (bad != null) {
+                    warn.accept(dir.getName() + "/" + f.getName() + ": unknown block " + bad + ", skipped");
+                } else {
+                    out.add(t);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                warn.accept(e.getMessage() + ", skipped");
+            }
+        }
+        return out;
+    }
+}
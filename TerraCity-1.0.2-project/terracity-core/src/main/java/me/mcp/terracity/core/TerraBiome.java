@@ -0,0 +1,9 @@
+package me.mcp.terracity.core;
+
+/** Biomes the generator assigns; names match the Minecraft biome keys. */
+public enum TerraBiome {
+    PLAINS, FOREST, TAIGA, SNOWY_PLAINS, SNOWY_TAIGA,
+    DESERT, BADLANDS, JUNGLE, SWAMP,
+    STONY_PEAKS, JAGGED_PEAKS, SNOWY_SLOPES,
+    DEEP_OCEAN, BEACH, WINDSWEPT_HILLS
+}
@@ -0,0 +1,88 @@
+package me.mcp.terracity.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Server-independent block identity used by the core generator. Blocks are interned by their
+ * Minecraft material name (e.g. {@code STONE_BRICKS}) and get a small dense {@link #id()},
+ * which platform adapters use to index their own block tables.
+ */
+public final class TerraBlock {
+
+    private static final Map<String, TerraBlock> BY_NAME = new ConcurrentHashMap<>();
+    private static final List<TerraBlock> BY_ID = new ArrayList<>();
+
+    public static final TerraBlock AIR = of("AIR");
+    public static final TerraBlock STONE = of("STONE");
+    public static final TerraBlock WATER = of("WATER");
+    public static final TerraBlock LAVA = of("LAVA");
+    public static final TerraBlock GRASS_BLOCK = of("GRASS_BLOCK");
+    public static final TerraBlock DIRT = of("DIRT");
+    public static final TerraBlock SAND = of("SAND");
+    public static final TerraBlock SANDSTONE = of("SANDSTONE");
+    public static final TerraBlock SNOW_BLOCK = of("SNOW_BLOCK");
+    public static final TerraBlock PODZOL = of("PODZOL");
+    public static final TerraBlock GRAVEL = of("GRAVEL");
+    public static final TerraBlock BASALT = of("BASALT");
+    public static final TerraBlock BLACKSTONE = of("BLACKSTONE");
+    public static final TerraBlock LANTERN = of("LANTERN");
+    public static final TerraBlock STONE_BRICKS = of("STONE_BRICKS");
+    public static final TerraBlock ANDESITE = of("ANDESITE");
+    public static final TerraBlock SPRUCE_PLANKS = of("SPRUCE_PLANKS");
+    public static final TerraBlock OAK_PLANKS = of("OAK_PLANKS");
+    public static final TerraBlock DARK_OAK_PLANKS = of("DARK_OAK_PLANKS");
+    public static final TerraBlock STRIPPED_SPRUCE_LOG = of("STRIPPED_SPRUCE_LOG");
+    public static final TerraBlock GLASS = of("GLASS");
+
+    private final String name;
+    private final int id;
+    private final boolean replaceable;
+
+    private TerraBlock(String name, int id) {
+        this.name = name;
+        this.id = id;
+        this.replaceable = name.equals("AIR") || name.equals("CAVE_AIR") || name.equals("VOID_AIR")
+                || name.endsWith("_LEAVES") || name.equals("VINE");
+    }
+
+    public static TerraBlock of(String name) {
+        String key = name.toUpperCase(Locale.ROOT);
+        TerraBlock b = BY_NAME.get(key);
+        if (b != null) return b;
+        synchronized (BY_ID) {
+            return BY_NAME.computeIfAbsent(key, k -> {
+                TerraBlock nb = new TerraBlock(k, BY_ID.size());
+                BY_ID.add(nb);
+                return nb;
+            });
+        }
+    }
+
+    /** Number of blocks interned so far; every {@link #id()} is below this. */
+    public static int count() {
+        synchronized (BY_ID) {
+            return BY_ID.size();
+        }
+    }
+
+    /** Block with the given {@link #id()}. */
+    public static TerraBlock byId(int id) {
+        synchronized (BY_ID) {
+            return BY_ID.get(id);
+        }
+    }
+
+    public String name() { return name; }
+
+    public int id() { return id; }
+
+    /** Air, leaves and vines: blocks a tree may grow into. */
+    public boolean replaceable() { return replaceable; }
+
+    @Override
+    public String toString() { return name; }
+}
@@ -0,0 +1,370 @@
+package me.mcp.terracity.core;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The whole terrain pipeline without any server dependency: noise (stone, water, lava),
+ * surface (soil, roads, buildings) and base heights. The Paper generator is a thin adapter
+ * around this; headless tools and benchmarks drive it directly with an {@link ArrayBlockBuffer}.
+ * <p>
+ * An engine is bound to one {@link TerraCitySettings} snapshot for its whole life; applying new
+ * settings means building a new engine and swapping the reference. Each engine carries a
+ * generation epoch, one higher than the engine it replaced.
+ */
+public class TerraCityEngine {
+
+    private final TerraCitySettings settings;
+    private final int epoch;
+    private final TerrainSampler terrain;
+    private final CityPlanner planner;
+    private final CityStructures structures;
+    private final ColumnCache columns;
+    private final BiomeResolver biomes;
+    private final RegionStore store;
+    private final HeightEstimator heights;
+    private final GenerationMetrics metrics;
+    private final SurfaceHeights surfaceHeights = new SurfaceHeights();
+
+    private final int seaLevel;
+    private final int snowLine;
+
+    private final TerraBlock roadMat;
+    private final TerraBlock sidewalkMat;
+
+    private final int maxBuildingsPerChunk;
+
+    public TerraCityEngine(TerraCitySettings settings) {
+        this(settings, null, msg -> {});
+    }
+
+    public TerraCityEngine(TerraCitySettings settings, TerraCityEngine previous) {
+        this(settings, previous, msg -> {});
+    }
+
+    /**
+     * Engine for {@code settings} that replaces {@code previous}. Components whose inputs did not
+     * change are carried over with their caches; the rest (and everything built on them) start
+     * empty, so only data the new settings actually affect is recomputed. {@code warn} receives
+     * region cache I/O problems.
+     */
+    public TerraCityEngine(TerraCitySettings settings, TerraCityEngine previous, Consumer<String> warn) {
+        TerraCitySettings old = (previous == null) ? null : previous.settings;
+        boolean sameTerrain = old != null && TerraCitySettings.sameTerrain(old, settings);
+        boolean samePlanner = sameTerrain && TerraCitySettings.sameCityPlan(old, settings);
+        boolean sameColumns = samePlanner && TerraCitySettings.sameColumns(old, settings);
+
+        this.settings = settings;
+        this.epoch = (previous == null) ? 0 : previous.epoch + 1;
+        this.terrain = sameTerrain ? previous.terrain : new TerrainSampler(settings);
+        this.planner = samePlanner ? previous.planner : new CityPlanner(settings);
+        this.structures = new CityStructures(settings);
+        this.columns = sameColumns ? previous.columns : new ColumnCache(settings, terrain, planner);
+        this.heights = (samePlanner && old.estimateLod() == settings.estimateLod())
+                ? previous.heights : new HeightEstimator(terrain, planner, settings.estimateLod());
+        Path dir = settings.regionCache();
+        long fingerprint = RegionStore.fingerprint(settings);
+        if (dir == null) this.store = null;
+        else if (previous != null && previous.store != null && previous.store.directory().equals(dir)
+                && RegionStore.fingerprint(old) == fingerprint) this.store = previous.store;
+        else this.store = new RegionStore(dir, fingerprint, warn);
+        this.biomes = new BiomeResolver(planner, terrain, columns, store);
+        this.metrics = (previous == null) ? new GenerationMetrics() : previous.metrics;
+
+        seaLevel = settings.terrain().seaLevel();
+        snowLine = settings.terrain().snowLine();
+
+        TerraCitySettings.City c = settings.city();
+        roadMat = c.roadMaterial();
+        sidewalkMat = c.sidewalkMaterial();
+
+        maxBuildingsPerChunk = c.maxBuildingsPerChunk();
+    }
+
+    public TerraCitySettings getSettings() { return settings; }
+    public int getEpoch() { return epoch; }
+    public CityPlanner getPlanner() { return planner; }
+    public TerrainSampler getTerrain() { return terrain; }
+    public ColumnCache getColumns() { return columns; }
+    public BiomeResolver getBiomes() { return biomes; }
+    public GenerationMetrics getMetrics() { return metrics; }
+
+    /** The on-disk region cache, or null when it is off. */
+    public RegionStore getRegionStore() { return store; }
+
+    /** Hit rates of this engine's caches (reset whenever a reload rebuilds the cache). */
+    public List<CacheStats> cacheStats() {
+        List<CacheStats> out = new ArrayList<>(List.of(columns.stats(), planner.cacheStats(), terrain.volcanoCacheStats(),
+                structures.layoutCacheStats()));
+        if (settings.estimateBaseHeight()) out.add(heights.cacheStats());
+        if (store != null) out.add(store.stats());
+        return out;
+    }
+
+    public HeightEstimator getHeightEstimator() { return heights; }
+
+    /**
+     * Binds the world {@code name} with {@code seed} to its noise engine from
+     * {@code generation.noise-worlds}; call before the world generates anything. Cheap once bound.
+     */
+    public NoiseEngine.Kind bindWorld(String name, long seed) {
+        return terrain.bind(seed, settings.noiseFor(name));
+    }
+
+    /**
+     * Terrain height for the server's base-height queries. Read from the region cache or the
+     * column cache when the chunk is there; otherwise sampled for that one column rather than
+     * computing the whole chunk, or with {@code cache.estimate-base-height} a lattice estimate
+     * (see {@link HeightEstimator}).
+     */
+    public int baseHeight(long seed, int x, int z) {
+        if (store != null) {
+            int h = store.height(seed, x, z);
+            if (h != RegionStore.MISSING) return h;
+        }
+        ColumnSample cols = columns.peek(seed, x >> 4, z >> 4);
+        if (cols != null) return cols.height(x & 15, z & 15);
+        return settings.estimateBaseHeight() ? heights.height(seed, x, z) : heights.exactHeight(seed, x, z);
+    }
+
+    /** Flushes the region cache to disk; call when the server stops. */
+    public void flush() {
+        if (store != null) store.flush();
+    }
+
+    public void generateNoise(long seed, int chunkX, int chunkZ, BlockBuffer data) {
+        long t0 = System.nanoTime();
+        int minY = data.minY();
+        int maxY = data.maxY();
+
+        ColumnSample cols = columns.get(seed, chunkX, chunkZ);
+        biomes.persist(cols);
+        countInfluence(cols);
+        int[] top = new int[256];
+
+        int lowest = maxY, highest = minY;
+        for (int i = 0; i < 256; i++) {
+            int h = clamp(cols.height[i], minY + 1, maxY - 1);
+            top[i] = h;
+            lowest = Math.min(lowest, h);
+            highest = Math.max(highest, h);
+        }
+
+        // Uniform layers as one region each: stone up to the lowest column, and the open water
+        // above the highest one when the whole chunk is below sea level. Columns only fill the
+        // band in between.
+        int seaTop = Math.min(seaLevel, maxY - 1);
+        boolean flooded = highest < seaLevel;
+        data.setRegion(0, minY, 0, 16, lowest + 1, 16, TerraBlock.STONE);
+        if (flooded && highest < seaTop) data.setRegion(0, highest + 1, 0, 16, seaTop + 1, 16, TerraBlock.WATER);
+
+        int lavaLevel = clamp(terrain.volcanoLavaLevel(), minY + 1, maxY - 1);
+        boolean rivers = cols.riverInfluence != Influence.OUTSIDE;
+        boolean craters = cols.volcanoInfluence != Influence.OUTSIDE;
+        for (int i = 0; i < 256; i++) {
+            int lx = i & 15, lz = i >> 4;
+            int h = top[i];
+
+            if (h > lowest) data.setRegion(lx, lowest + 1, lz, lx + 1, h + 1, lz + 1, TerraBlock.STONE);
+
+            if (h < seaLevel) {
+                int waterTop = flooded ? highest : seaTop;
+                if (h < waterTop) data.setRegion(lx, h + 1, lz, lx + 1, waterTop + 1, lz + 1, TerraBlock.WATER);
+            }
+
+            // Rivers
+            if (rivers && cols.river[i] > 0.55 && h >= seaLevel - 2) {
+                int waterTop = Math.min(maxY - 1, h + 2);
+                data.setRegion(lx, h + 1, lz, lx + 1, waterTop + 1, lz + 1, TerraBlock.WATER);
+            }
+
+            // Volcano crater lava
+            if (craters && cols.crater[i] > 0.55 && lavaLevel > h) {
+                data.setRegion(lx, h + 1, lz, lx + 1, lavaLevel + 1, lz + 1, TerraBlock.LAVA);
+                top[i] = lavaLevel;
+            }
+        }
+        surfaceHeights.put(seed, chunkX, chunkZ, top);
+
+        metrics.increment(GenerationMetrics.Counter.CHUNKS);
+        metrics.time(GenerationMetrics.Stage.NOISE, t0);
+    }
+
+    private static final GenerationMetrics.Counter[] CITY_INFLUENCE = {
+            GenerationMetrics.Counter.CITY_OUTSIDE, GenerationMetrics.Counter.CITY_PARTIAL, GenerationMetrics.Counter.CITY_INSIDE };
+    private static final GenerationMetrics.Counter[] VOLCANO_INFLUENCE = {
+            GenerationMetrics.Counter.VOLCANO_OUTSIDE, GenerationMetrics.Counter.VOLCANO_PARTIAL, GenerationMetrics.Counter.VOLCANO_INSIDE };
+
+    // Which fast path each layer took for the chunk (rivers are never INSIDE)
+    private void countInfluence(ColumnSample cols) {
+        metrics.increment(CITY_INFLUENCE[cols.cityInfluence.ordinal()]);
+        metrics.increment(VOLCANO_INFLUENCE[cols.volcanoInfluence.ordinal()]);
+        metrics.increment(cols.riverInfluence == Influence.OUTSIDE
+                ? GenerationMetrics.Counter.RIVER_OUTSIDE : GenerationMetrics.Counter.RIVER_PARTIAL);
+    }
+
+    public void generateSurface(long seed, int chunkX, int chunkZ, BlockBuffer data) {
+        long t0 = System.nanoTime();
+        int minY = data.minY();
+        int maxY = data.maxY();
+
+        ColumnSample cols = columns.get(seed, chunkX, chunkZ);
+        CityLayout layout = (cols.city != null) ? structures.layout(seed, cols.city) : null;
+        long[] roads = (layout != null) ? layout.roads(chunkX, chunkZ) : null;
+        long[] sidewalks = (layout != null) ? layout.sidewalks(chunkX, chunkZ) : null;
+        int[] tops = surfaceHeights.take(seed, chunkX, chunkZ);
+        int[] slope = slopeGrid(seed, chunkX << 4, chunkZ << 4, cols);
+        boolean volcanoes = cols.volcanoInfluence != Influence.OUTSIDE;
+        boolean rivers = cols.riverInfluence != Influence.OUTSIDE;
+        boolean city = layout != null && cols.cityInfluence != Influence.OUTSIDE;
+
+        for (int lx = 0; lx < 16; lx++) {
+            for (int lz = 0; lz < 16; lz++) {
+                int topY = (tops != null)
+                        ? surfaceTop(data, lx, lz, tops[(lz << 4) | lx], maxY)
+                        : findTopSolidY(data, lx, lz, minY, maxY);
+                if (tops != null) tops[(lz << 4) | lx] = topY;
+                if (topY < minY) continue;
+
+                TerraBlock top = TerraBlock.GRASS_BLOCK;
+                TerraBlock under = TerraBlock.DIRT;
+
+                double temp = cols.temperature(lx, lz);
+                double hum = cols.humidity(lx, lz);
+
+                boolean desert = temp > 0.35 && hum < 0.15;
+                boolean snowy = temp < -0.35 || topY >= snowLine;
+
+                if (topY <= seaLevel + 2) { top = TerraBlock.SAND; under = TerraBlock.SANDSTONE; }
+                else if (desert) { top = TerraBlock.SAND; under = TerraBlock.SANDSTONE; }
+                else if (snowy) { top = TerraBlock.SNOW_BLOCK; under = TerraBlock.DIRT; }
+                else if (hum > 0.45 && temp < 0.2) { top = TerraBlock.PODZOL; under = TerraBlock.DIRT; }
+
+                double steep = steepness(slope, lx, lz);
+                if (steep >= terrain.cliffThreshold() && topY > seaLevel + 10) {
+                    top = TerraBlock.STONE;
+                    under = TerraBlock.STONE;
+                }
+
+                // Volcano surface palette
+                double vf = volcanoes ? cols.volcano(lx, lz) : 0.0;
+                if (vf > 0.15 && topY > seaLevel + 6) {
+                    top = (vf > 0.65) ? TerraBlock.BASALT : TerraBlock.STONE;
+                    under = TerraBlock.STONE;
+                    if (vf > 0.78) top = TerraBlock.BLACKSTONE;
+                }
+
+                // Rivers: soften banks and add gravel/sand
+                double river = rivers ? cols.river(lx, lz) : 0.0;
+                if (river > 0.55 && topY >= seaLevel - 2) {
+                    top = (topY <= seaLevel + 1) ? TerraBlock.SAND : TerraBlock.GRAVEL;
+                    under = TerraBlock.DIRT;
+                }
+
+                data.set(lx, topY, lz, top);
+                for (int y = topY - 1; y >= topY - 3; y--) {
+                    if (y < minY) break;
+                    TerraBlock cur = data.get(lx, y, lz);
+                    if (cur == TerraBlock.STONE) data.set(lx, y, lz, under);
+                }
+
+                if (city) {
+                    double blend = cols.cityBlend(lx, lz);
+                    if (blend > 0.0) {
+                        boolean road = CityLayout.has(roads, lx, lz);
+                        TerraBlock surf = road ? roadMat : TerraBlock.GRASS_BLOCK;
+
+                        if (CityLayout.has(sidewalks, lx, lz)) surf = sidewalkMat;
+                        if (blend >= 0.85 && !road) surf = sidewalkMat;
+                        if (surf == TerraBlock.SNOW_BLOCK) surf = sidewalkMat;
+
+                        data.set(lx, topY, lz, surf);
+                    }
+                }
+            }
+        }
+
+        metrics.time(GenerationMetrics.Stage.SURFACE, t0);
+
+        if (layout != null && maxBuildingsPerChunk > 0) {
+            long t1 = System.nanoTime();
+            int built = structures.generateBuildingsInChunk(data, tops, chunkX, chunkZ, layout);
+            metrics.add(GenerationMetrics.Counter.BUILDINGS, built);
+            metrics.time(GenerationMetrics.Stage.BUILDINGS, t1);
+        }
+    }
+
+    /** Distance to the neighbours compared for cliff steepness. */
+    private static final int SLOPE_REACH = 6;
+    private static final int SLOPE_SIZE = 16 + 2 * SLOPE_REACH;
+
+    /**
+     * Natural heights of the chunk plus a {@link #SLOPE_REACH}-block border on every side (the
+     * corners are never read and stay 0), indexed {@code (lz + REACH) * SIZE + (lx + REACH)}.
+     * The chunk itself comes from the column cache; only the four border strips are evaluated,
+     * each with one exact grid call.
+     */
+    private int[] slopeGrid(long seed, int baseX, int baseZ, ColumnSample cols) {
+        int r = SLOPE_REACH;
+        int[] grid = new int[SLOPE_SIZE * SLOPE_SIZE];
+        for (int i = 0; i < 256; i++) grid[((i >> 4) + r) * SLOPE_SIZE + (i & 15) + r] = cols.naturalHeight[i];
+
+        int[] strip = new int[16 * r];
+        terrain.heightGrid(seed, baseX - r, baseZ, r, 16, strip, null, 0);
+        copyStrip(strip, r, 16, grid, 0, r);
+        terrain.heightGrid(seed, baseX + 16, baseZ, r, 16, strip, null, 0);
+        copyStrip(strip, r, 16, grid, 16 + r, r);
+        terrain.heightGrid(seed, baseX, baseZ - r, 16, r, strip, null, 0);
+        copyStrip(strip, 16, r, grid, r, 0);
+        terrain.heightGrid(seed, baseX, baseZ + 16, 16, r, strip, null, 0);
+        copyStrip(strip, 16, r, grid, r, 16 + r);
+        return grid;
+    }
+
+    private static void copyStrip(int[] strip, int w, int h, int[] grid, int gx, int gz) {
+        for (int j = 0; j < h; j++) System.arraycopy(strip, j * w, grid, (gz + j) * SLOPE_SIZE + gx, w);
+    }
+
+    private static double steepness(int[] grid, int lx, int lz) {
+        int c = (lz + SLOPE_REACH) * SLOPE_SIZE + lx + SLOPE_REACH;
+        int h = grid[c];
+        int hx = grid[c + SLOPE_REACH];
+        int hxm = grid[c - SLOPE_REACH];
+        int hz = grid[c + SLOPE_REACH * SLOPE_SIZE];
+        int hzm = grid[c - SLOPE_REACH * SLOPE_SIZE];
+
+        int dx = Math.max(Math.abs(hx - h), Math.abs(hxm - h));
+        int dz = Math.max(Math.abs(hz - h), Math.abs(hzm - h));
+
+        double s = (dx + dz) / 60.0;
+        return clamp01(s);
+    }
+
+    /**
+     * Top solid block of a column whose noise-stage top was {@code recorded}. Only blocks the
+     * generator did not write can be above it (the server's noise terrain may leave stone over an
+     * air or water gap), so those are scanned from {@link BlockBuffer#foreignTop()} down; a
+     * buffer holding only our blocks answers without a read.
+     */
+    private static int surfaceTop(BlockBuffer data, int lx, int lz, int recorded, int maxY) {
+        for (int y = Math.min(data.foreignTop(), maxY - 1); y > recorded; y--) {
+            TerraBlock m = data.get(lx, y, lz);
+            if (m != TerraBlock.AIR && m != TerraBlock.WATER) return y;
+        }
+        return recorded;
+    }
+
+    private static int findTopSolidY(BlockBuffer data, int lx, int lz, int minY, int maxY) {
+        for (int y = maxY - 1; y >= minY; y--) {
+            TerraBlock m = data.get(lx, y, lz);
+            if (m != TerraBlock.AIR && m != TerraBlock.WATER) return y;
+        }
+        return minY - 1;
+    }
+
+    private static int clamp(int v, int lo, int hi) { return Math.max(lo, Math.min(hi, v)); }
+
+    private static double clamp01(double v) { return Math.max(0.0, Math.min(1.0, v)); }
+}
@@ -0,0 +1,231 @@
+package me.mcp.terracity.core;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable, validated snapshot of every setting the generator uses. Built once per load or
+ * reload with {@link #from(ConfigSource)}; generation code reads these fields instead of the
+ * live configuration, so a reload can never be observed half-applied.
+ */
+public record TerraCitySettings(
+        int seedSalt,
+        TerraRandom.Mode random,
+        NoiseEngine.Kind noise,
+        Map<String, NoiseEngine.Kind> worldNoise,
+        Terrain terrain,
+        Biomes biomes,
+        City city,
+        Ocean ocean,
+        Rivers rivers,
+        Volcano volcano,
+        Flora flora,
+        Trees trees,
+        int columnCacheChunks,
+        boolean estimateBaseHeight,
+        int estimateLod,
+        Path regionCache,
+        TemplateSet templates
+) {
+
+    public record Terrain(int seaLevel, int baseHeight, int amplitude, double scale, double ridgeWeight,
+                          double cliffThreshold, int snowLine, int lattice) {}
+
+    public record Biomes(double temperatureScale, double humidityScale) {}
+
+    public record City(boolean enabled, int regionSize, double chance, int radius, int blend, int baseHeightMin,
+                       int roadSpacing, int roadWidth, TerraBlock roadMaterial, TerraBlock sidewalkMaterial,
+                       int plotSize, int plotMargin, int maxBuildingsPerChunk, double customChance,
+                       boolean spanChunks, Palette palette) {}
+
+    public record Palette(TerraBlock wall, TerraBlock floor, TerraBlock roof,
+                          TerraBlock trim, TerraBlock window, TerraBlock stone) {}
+
+    public record Ocean(double scale, double threshold, int depth) {}
+
+    public record Rivers(double scale, double warpScale, int depth, double width) {}
+
+    public record Volcano(int regionSize, double chance, int radius, int height, int craterRadius, int lavaLevel) {}
+
+    public record Flora(int attemptsPerChunk, double palmChance, double pineChance, double jungleChance) {}
+
+    public record Trees(boolean enabled, int attemptsPerChunk, int minY, int maxY, double customChance) {}
+
+    /** Built-in defaults (the same values as the bundled config.yml). */
+    public static TerraCitySettings defaults() {
+        return from(ConfigSource.defaults());
+    }
+
+    public static TerraCitySettings from(ConfigSource c) {
+        int seaLevel = c.getInt("terrain.sea-level", 63);
+
+        Terrain terrain = new Terrain(
+                seaLevel,
+                c.getInt("terrain.base-height", 70),
+                c.getInt("terrain.height-amplitude", 72),
+                c.getDouble("terrain.terrain-scale", 0.0046),
+                clamp01(c.getDouble("terrain.ridge-weight", 0.55)),
+                clamp01(c.getDouble("terrain.cliff-threshold", 0.78)),
+                c.getInt("terrain.snow-line", 150),
+                latticeOr(c.getInt("terrain.lattice", 0)));
+
+        Biomes biomes = new Biomes(
+                c.getDouble("biomes.temperature-scale", 0.0023),
+                c.getDouble("biomes.humidity-scale", 0.0020));
+
+        Palette palette = new Palette(
+                c.getBlock("city.buildings.palette.wall", TerraBlock.SPRUCE_PLANKS),
+                c.getBlock("city.buildings.palette.floor", TerraBlock.OAK_PLANKS),
+                c.getBlock("city.buildings.palette.roof", TerraBlock.DARK_OAK_PLANKS),
+                c.getBlock("city.buildings.palette.trim", TerraBlock.STRIPPED_SPRUCE_LOG),
+                c.getBlock("city.buildings.palette.window", TerraBlock.GLASS),
+                c.getBlock("city.buildings.palette.stone", TerraBlock.STONE_BRICKS));
+
+        City city = new City(
+                c.getBoolean("city.enabled", true),
+                Math.max(128, c.getInt("city.region-size", 512)),
+                clamp01(c.getDouble("city.chance", 0.12)),
+                Math.max(32, c.getInt("city.radius", 120)),
+                Math.max(0, c.getInt("city.blend", 40)),
+                Math.max(60, c.getInt("city.base-height-min", 80)),
+                Math.max(16, c.getInt("city.road.spacing", 32)),
+                Math.max(1, c.getInt("city.road.width", 5)),
+                c.getBlock("city.road.material", TerraBlock.STONE_BRICKS),
+                c.getBlock("city.road.sidewalk", TerraBlock.ANDESITE),
+                Math.max(10, c.getInt("city.plots.size", 16)),
+                Math.max(0, c.getInt("city.plots.margin", 2)),
+                Math.max(0, c.getInt("city.buildings.max-per-chunk", 2)),
+                clamp01(c.getDouble("city.buildings.custom-chance", 0.25)),
+                c.getBoolean("city.buildings.span-chunks", false),
+                palette);
+
+        Ocean ocean = new Ocean(
+                c.getDouble("ocean.scale", 0.00085),
+                clamp01(c.getDouble("ocean.threshold", 0.52)), // lower => more land, higher => more ocean
+                Math.max(8, c.getInt("ocean.depth", 28)));
+
+        Rivers rivers = new Rivers(
+                c.getDouble("rivers.scale", 0.0021),
+                c.getDouble("rivers.warp-scale", 0.0009),
+                Math.max(2, c.getInt("rivers.depth", 10)),
+                clamp01(c.getDouble("rivers.width", 0.10))); // ~0.07 thin, ~0.14 thick
+
+        Volcano volcano = new Volcano(
+                Math.max(512, c.getInt("volcano.region-size", 1536)),
+                clamp01(c.getDouble("volcano.chance", 0.08)),
+                Math.max(96, c.getInt("volcano.radius", 220)),
+                Math.max(40, c.getInt("volcano.height", 110)),
+                Math.max(10, c.getInt("volcano.crater-radius", 28)),
+                c.getInt("volcano.lava-level", seaLevel + 18));
+
+        Flora flora = new Flora(
+                c.getInt("flora.attempts-per-chunk", 4),
+                c.getDouble("flora.palm.chance", 0.45),
+                c.getDouble("flora.pine.chance", 0.30),
+                c.getDouble("flora.jungle.chance", 0.25));
+
+        Trees trees = new Trees(
+                c.getBoolean("trees.enabled", true),
+                Math.max(0, c.getInt("trees.attempts-per-chunk", 10)),
+                c.getInt("trees.min-y", -64),
+                c.getInt("trees.max-y", 320),
+                clamp01(c.getDouble("trees.custom-chance", 0.20)));
+
+        NoiseEngine.Kind noise = NoiseEngine.Kind.parse(c.getString("generation.noise", null), NoiseEngine.Kind.LEGACY);
+        Map<String, NoiseEngine.Kind> worldNoise = new LinkedHashMap<>();
+        for (String world : c.keys("generation.noise-worlds")) {
+            worldNoise.put(world, NoiseEngine.Kind.parse(c.getString("generation.noise-worlds." + world, null), noise));
+        }
+
+        return new TerraCitySettings(
+                c.getInt("seed-salt", 1337),
+                TerraRandom.Mode.parse(c.getString("generation.random", null), TerraRandom.Mode.LEGACY),
+                noise, Map.copyOf(worldNoise),
+                terrain, biomes, city, ocean, rivers, volcano, flora, trees,
+                Math.max(16, c.getInt("cache.column-chunks", 1024)),
+                c.getBoolean("cache.estimate-base-height", false),
+                Math.max(0, Math.min(3, c.getInt("cache.estimate-lod", 0))),
+                c.getBoolean("cache.disk.enabled", false) ? Path.of(c.getString("cache.disk.directory", "cache")) : null,
+                TemplateSet.EMPTY);
+    }
+
+    /** The same settings with {@code templates} as the custom structure variants. */
+    public TerraCitySettings withTemplates(TemplateSet templates) {
+        return new TerraCitySettings(seedSalt, random, noise, worldNoise, terrain, biomes, city, ocean, rivers, volcano,
+                flora, trees, columnCacheChunks, estimateBaseHeight, estimateLod, regionCache, templates);
+    }
+
+    /** The same settings with {@code regionCache} as the on-disk region cache directory (null = off). */
+    public TerraCitySettings withRegionCache(Path regionCache) {
+        return new TerraCitySettings(seedSalt, random, noise, worldNoise, terrain, biomes, city, ocean, rivers, volcano,
+                flora, trees, columnCacheChunks, estimateBaseHeight, estimateLod, regionCache, templates);
+    }
+
+    /** Noise engine of the world named {@code world} ({@code generation.noise-worlds}, else {@code generation.noise}). */
+    public NoiseEngine.Kind noiseFor(String world) {
+        return worldNoise.getOrDefault(world, noise);
+    }
+
+    /** Settings that shape the raw terrain (heights, rivers, volcanoes, snow line). */
+    static boolean sameTerrain(TerraCitySettings a, TerraCitySettings b) {
+        return a.seedSalt == b.seedSalt && a.random == b.random
+                && a.noise == b.noise && a.worldNoise.equals(b.worldNoise)
+                && a.terrain.equals(b.terrain) && a.ocean.equals(b.ocean)
+                && a.rivers.equals(b.rivers) && a.volcano.equals(b.volcano);
+    }
+
+    /** Settings that decide where cities are, given the same terrain. */
+    static boolean sameCityPlan(TerraCitySettings a, TerraCitySettings b) {
+        City x = a.city, y = b.city;
+        return x.enabled() == y.enabled() && x.regionSize() == y.regionSize() && x.chance() == y.chance()
+                && x.radius() == y.radius() && x.blend() == y.blend() && x.baseHeightMin() == y.baseHeightMin();
+    }
+
+    /** Settings that decide a city's streets and buildings, given the same cities. */
+    public static boolean sameCityLayout(TerraCitySettings a, TerraCitySettings b) {
+        City x = a.city, y = b.city;
+        return x.roadSpacing() == y.roadSpacing() && x.roadWidth() == y.roadWidth()
+                && x.roadMaterial() == y.roadMaterial() && x.sidewalkMaterial() == y.sidewalkMaterial()
+                && x.plotSize() == y.plotSize() && x.plotMargin() == y.plotMargin()
+                && x.maxBuildingsPerChunk() == y.maxBuildingsPerChunk() && x.customChance() == y.customChance()
+                && x.spanChunks() == y.spanChunks() && x.palette().equals(y.palette())
+                && a.templates.equals(b.templates);
+    }
+
+    /** Settings that feed cached column samples, given the same terrain and cities. */
+    static boolean sameColumns(TerraCitySettings a, TerraCitySettings b) {
+        return a.biomes.equals(b.biomes) && a.columnCacheChunks == b.columnCacheChunks;
+    }
+
+    /** Top-level config sections whose values differ between {@code a} and {@code b}. */
+    public static List<String> changedSections(TerraCitySettings a, TerraCitySettings b) {
+        List<String> out = new ArrayList<>();
+        if (a.seedSalt != b.seedSalt) out.add("seed-salt");
+        if (a.random != b.random || a.noise != b.noise || !a.worldNoise.equals(b.worldNoise)) out.add("generation");
+        if (!a.terrain.equals(b.terrain)) out.add("terrain");
+        if (!a.biomes.equals(b.biomes)) out.add("biomes");
+        if (!a.city.equals(b.city)) out.add("city");
+        if (!a.ocean.equals(b.ocean)) out.add("ocean");
+        if (!a.rivers.equals(b.rivers)) out.add("rivers");
+        if (!a.volcano.equals(b.volcano)) out.add("volcano");
+        if (!a.flora.equals(b.flora)) out.add("flora");
+        if (!a.trees.equals(b.trees)) out.add("trees");
+        if (a.columnCacheChunks != b.columnCacheChunks || a.estimateBaseHeight != b.estimateBaseHeight
+                || a.estimateLod != b.estimateLod || !Objects.equals(a.regionCache, b.regionCache)) out.add("cache");
+        if (!a.templates.equals(b.templates)) out.add("templates");
+        return out;
+    }
+
+    private static double clamp01(double v) {
+        return Math.max(0.0, Math.min(1.0, v));
+    }
+
+    // 0 (exact) or a power of two that divides a chunk
+    private static int latticeOr(int v) {
+        return (v == 2 || v == 4 || v == 8 || v == 16) ? v : 0;
+    }
+}
@@ -0,0 +1,90 @@
+package me.mcp.terracity.core;
+
+import java.util.Locale;
+
+/**
+ * Small, reseedable, non-thread-safe PRNG for generation code, used in place of
+ * {@code new java.util.Random(seed)} (which allocates an AtomicLong and CASes on every draw).
+ * <p>
+ * {@link Mode#LEGACY} replays java.util.Random's LCG exactly, so worlds started on 1.0.x keep
+ * generating identical cities, volcanoes, buildings and trees. {@link Mode#FAST} is SplitMix64.
+ */
+public final class TerraRandom {
+
+    public enum Mode {
+        LEGACY, FAST;
+
+        public static Mode parse(String name, Mode fallback) {
+            if (name == null) return fallback;
+            return switch (name.trim().toLowerCase(Locale.ROOT)) {
+                case "legacy" -> LEGACY;
+                case "fast" -> FAST;
+                default -> fallback;
+            };
+        }
+    }
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private final boolean legacy;
+    private long state;
+
+    public TerraRandom(Mode mode) {
+        this.legacy = (mode == Mode.LEGACY);
+    }
+
+    public TerraRandom(Mode mode, long seed) {
+        this(mode);
+        reseed(seed);
+    }
+
+    public TerraRandom reseed(long seed) {
+        state = legacy ? (seed ^ MULTIPLIER) & MASK : seed;
+        return this;
+    }
+
+    public double nextDouble() {
+        if (legacy) return (((long)next(26) << 27) + next(27)) * 0x1.0p-53;
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /** Uniform int in [0, bound); bound must be positive. */
+    public int nextInt(int bound) {
+        if (!legacy) return (int)(((nextLong() >>> 32) * bound) >>> 32);
+
+        int r = next(31);
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            r = (int)((bound * (long)r) >> 31);
+        } else {
+            for (int u = r; u - (r = u % bound) + m < 0; u = next(31)) { }
+        }
+        return r;
+    }
+
+    public boolean nextBoolean() {
+        if (legacy) return next(1) != 0;
+        return nextLong() < 0;
+    }
+
+    private long nextLong() {
+        state += GOLDEN;
+        return mix64(state);
+    }
+
+    // java.util.Random#next
+    private int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int)(state >>> (48 - bits));
+    }
+
+    /** SplitMix64 finalizer. */
+    public static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,823 @@
+package me.mcp.terracity.core;
+
+import java.util.Arrays;
+
+/**
+ * Height, river, volcano and climate layers. Immutable apart from its volcano cache and noise
+ * bindings: a reload builds a new sampler from the new {@link TerraCitySettings}.
+ * <p>
+ * Every layer samples the {@link NoiseEngine} of its world, found by seed: worlds are bound to
+ * an engine with {@link #bind} before they generate, and unbound seeds use the configured
+ * default ({@code generation.noise}).
+ */
+public class TerrainSampler {
+
+    private final int seaLevel;
+    private final int baseHeight;
+    private final int amp;
+    private final double scale;
+    private final double ridgeWeight;
+    private final double cliffThreshold;
+    private final int snowLine;
+    private final int seedSalt;
+    private final int lattice;
+    private final TerraRandom.Mode randomMode;
+
+    private final double oceanScale;
+    private final double oceanThreshold;
+    private final int oceanDepth;
+
+    private final double riverScale;
+    private final double riverWarpScale;
+    private final int riverDepth;
+    private final double riverWidth;
+
+    private final int volcanoRegionSize;
+    private final double volcanoChance;
+    private final int volcanoRadius;
+    private final int volcanoHeight;
+    private final int volcanoCraterRadius;
+    private final int volcanoLavaLevel;
+
+    private final RegionCache<Volcano> volcanoes = new RegionCache<>(1024);
+
+    private record Binding(long seed, NoiseEngine noise) {}
+
+    // One engine per kind, shared by the worlds bound to it (table engines key their tables by seed)
+    private final NoiseEngine[] engines = new NoiseEngine[NoiseEngine.Kind.values().length];
+    private final NoiseEngine defaultNoise;
+    // Copied on bind; a handful of worlds at most, so a scan beats a map
+    private volatile Binding[] bindings = new Binding[0];
+
+    public TerrainSampler(TerraCitySettings settings) {
+        TerraCitySettings.Terrain t = settings.terrain();
+        seedSalt = settings.seedSalt();
+        randomMode = settings.random();
+
+        seaLevel = t.seaLevel();
+        baseHeight = t.baseHeight();
+        amp = t.amplitude();
+        scale = t.scale();
+        ridgeWeight = t.ridgeWeight();
+        cliffThreshold = t.cliffThreshold();
+        snowLine = t.snowLine();
+        lattice = t.lattice();
+
+        // Oceans / seas
+        oceanScale = settings.ocean().scale();
+        oceanThreshold = settings.ocean().threshold();
+        oceanDepth = settings.ocean().depth();
+
+        // Rivers (smooth & connected via domain-warped ridged noise)
+        riverScale = settings.rivers().scale();
+        riverWarpScale = settings.rivers().warpScale();
+        riverDepth = settings.rivers().depth();
+        riverWidth = settings.rivers().width();
+
+        // Volcanoes
+        TerraCitySettings.Volcano v = settings.volcano();
+        volcanoRegionSize = v.regionSize();
+        volcanoChance = v.chance();
+        volcanoRadius = v.radius();
+        volcanoHeight = v.height();
+        volcanoCraterRadius = v.craterRadius();
+        volcanoLavaLevel = v.lavaLevel();
+
+        for (NoiseEngine.Kind k : NoiseEngine.Kind.values()) engines[k.ordinal()] = k.create();
+        defaultNoise = engines[settings.noise().ordinal()];
+    }
+
+    public int seaLevel() { return seaLevel; }
+    public double cliffThreshold() { return cliffThreshold; }
+    public int snowLine() { return snowLine; }
+    public int lattice() { return lattice; }
+
+    /**
+     * Makes the world with {@code seed} sample {@code kind} noise from now on. The first binding
+     * of a seed wins, so two worlds sharing a seed share an engine; returns the seed's engine kind.
+     */
+    public NoiseEngine.Kind bind(long seed, NoiseEngine.Kind kind) {
+        for (Binding b : bindings) if (b.seed == seed) return b.noise.kind();
+        synchronized (this) {
+            Binding[] bs = bindings;
+            for (Binding b : bs) if (b.seed == seed) return b.noise.kind();
+            Binding[] next = Arrays.copyOf(bs, bs.length + 1);
+            next[bs.length] = new Binding(seed, engines[kind.ordinal()]);
+            bindings = next;
+            return kind;
+        }
+    }
+
+    /** The noise engine the world with {@code seed} samples. */
+    public NoiseEngine noise(long seed) {
+        for (Binding b : bindings) if (b.seed == seed) return b.noise;
+        return defaultNoise;
+    }
+
+    public int height(long seed, int x, int z) {
+        return height(seed, x, z, null, 0, 0);
+    }
+
+    /**
+     * {@link #height(long, int, int)} with the {@code lod} finest octaves of the mountain and
+     * ridge noise left out, for queries that only need the rough shape (0 = exact). See
+     * {@link #lodError} for how far off that can be.
+     */
+    public int height(long seed, int x, int z, int lod) {
+        return height(seed, x, z, null, 0, lod);
+    }
+
+    int height(long seed, int x, int z, ColumnSample out, int i) {
+        return height(seed, x, z, out, i, 0);
+    }
+
+    /**
+     * Height of one column as chunk generation makes it: with {@code terrain.lattice} the ridge,
+     * continent and river warp layers are interpolated from the chunk-aligned lattice exactly as
+     * {@link #heightGrid} does, otherwise this is {@link #height(long, int, int, int)}.
+     */
+    public int generatedHeight(long seed, int x, int z, int lod) {
+        if (lattice == 0) return height(seed, x, z, null, 0, lod);
+        long s = seed + seedSalt;
+        NoiseEngine noise = noise(seed);
+
+        double cont = clamp01((latticeLayer(noise, s + 99991L, x, z, 0, oceanScale, 3, 0) + 1.0) * 0.5);
+        double n = fbm(noise, s, x * scale, z * scale, 4, lod);
+        double ridgedRaw = latticeLayer(noise, s + 7777L, x, z, 0, scale * 0.75, 3, lod);
+        int h = relief(n, ridgedRaw, cont);
+
+        double river = 0.0;
+        if (h > seaLevel - 2) {
+            double xw = x + latticeLayer(noise, s + 31001L, x, z, 0, riverWarpScale, 2, 0) * 220.0;
+            double zw = z + latticeLayer(noise, s + 31002L, x, z, 1000, riverWarpScale, 2, 0) * 220.0;
+            river = riverLine(noise, s, xw * riverScale, zw * riverScale);
+        }
+        return shape(x, z, h, river, volcanoAt(seed, x, z), null, 0);
+    }
+
+    // One column of a coarse heightGrid layer: the same 4x4 lattice points, the same Catmull-Rom
+    // passes (x, then z). The layer's grid is offset by (shift, -shift), as the river warp's is.
+    private double latticeLayer(NoiseEngine noise, long s, int x, int z, int shift, double freq, int octaves, int lod) {
+        int gx = Math.floorMod(x, lattice), gz = Math.floorMod(z, lattice);
+        int kept = Math.max(1, octaves - Math.max(0, lod));
+        double[] lat = new double[16];
+        noise.fbmGrid(lat, s, x - gx - lattice + shift, z - gz - lattice - shift, lattice, 4, 4, freq, kept, 2.0, 0.5);
+
+        double tx = gx / (double) lattice, tz = gz / (double) lattice;
+        double[] rows = new double[4];
+        for (int r = 0; r < 4; r++) rows[r] = cubic(lat[r * 4], lat[r * 4 + 1], lat[r * 4 + 2], lat[r * 4 + 3], tx);
+        double v = cubic(rows[0], rows[1], rows[2], rows[3], tz);
+        return (kept == octaves) ? v : v * (1.0 - Math.pow(0.5, kept)) / (1.0 - Math.pow(0.5, octaves));
+    }
+
+    /**
+     * Same as {@link #height(long, int, int, int)}, but also records the river mask and volcano
+     * factors it computes along the way into {@code out} (when non-null), so callers that
+     * need those layers don't have to evaluate them a second time.
+     * <p>
+     * Layers go coarse to fine, and the river mask (seven octaves with its domain warp, the
+     * costliest layer) is only evaluated where it can change the height: rivers carve columns
+     * above sea level - 2 only, so lower ones skip it unless {@code out} records the mask.
+     */
+    int height(long seed, int x, int z, ColumnSample out, int i, int lod) {
+        long s = seed + seedSalt;
+        NoiseEngine noise = noise(seed);
+
+        // Large-scale continentalness controls oceans/landmasses
+        double cont = continent01(noise, s, x, z);
+
+        // Base terrain (mountains + ridges)
+        double n = fbm(noise, s, x * scale, z * scale, 4, lod);
+        double ridgedRaw = fbm(noise, s + 7777L, x * (scale * 0.75), z * (scale * 0.75), 3, lod);
+        int h = relief(n, ridgedRaw, cont);
+
+        double river = (out != null || h > seaLevel - 2) ? riverMask01(noise, s, x, z) : 0.0;
+        return shape(x, z, h, river, volcanoAt(seed, x, z), out, i);
+    }
+
+    /**
+     * Most that leaving out {@code lod} octaves can move a height in the world with {@code seed},
+     * in blocks: the dropped octaves' full amplitude (up to {@link NoiseEngine#maxValue}) through
+     * the mountain and ridge weights, plus rounding. Next to river banks the carve threshold can
+     * flip as well, which this does not cover.
+     */
+    public double lodError(long seed, int lod) {
+        if (lod <= 0) return 0.0;
+        double ridge = dropped(3, lod); // ridged = (1 - |r|)^2 moves at most twice as far as r
+        double reach = (1.0 - ridgeWeight) * dropped(4, lod) + ridgeWeight * 4.0 * ridge;
+        return 0.8 * amp * reach * noise(seed).maxValue() + 1.0;
+    }
+
+    /**
+     * What {@link HeightEstimator} keeps of a lattice node: the relief (height before rounding,
+     * rivers, volcanoes and deep-sea flattening), the raw ridge and continent values, and the
+     * river line noise at the node's warped position (rivers only carve where |line| is below
+     * the river width).
+     */
+    record LatticeNode(double relief, double ridge, double continent, double riverLine) {}
+
+    LatticeNode latticeNode(long seed, int x, int z, int lod) {
+        long s = seed + seedSalt;
+        NoiseEngine noise = noise(seed);
+
+        double cont = continent01(noise, s, x, z);
+        double n = fbm(noise, s, x * scale, z * scale, 4, lod);
+        double r = fbm(noise, s + 7777L, x * (scale * 0.75), z * (scale * 0.75), 3, lod);
+        double ridged = 1.0 - Math.abs(r);
+        double mix = (1.0 - ridgeWeight) * n + ridgeWeight * (ridged * ridged * 2.0 - 1.0);
+        double h = baseHeight + (mix * 0.80 + (cont * 2.0 - 1.0) * 0.20) * amp;
+        if (cont < oceanThreshold) {
+            double t = (oceanThreshold - cont) / Math.max(1e-6, oceanThreshold);
+            h -= t * t * oceanDepth;
+        }
+
+        double xw = x + noise.fbm(s + 31001L, x * riverWarpScale, z * riverWarpScale, 2, 2.0, 0.5) * 220.0;
+        double zw = z + noise.fbm(s + 31002L, (x + 1000) * riverWarpScale, (z - 1000) * riverWarpScale, 2, 2.0, 0.5) * 220.0;
+        double line = noise.fbm(s + 424242L, xw * riverScale, zw * riverScale, 3, 2.0, 0.5);
+        return new LatticeNode(h, r, cont, line);
+    }
+
+    /** Relief after the deep-sea flattening, unrounded. */
+    double flatten(double relief) {
+        double floor = seaLevel - 12;
+        return (relief < floor) ? floor + (relief - floor) / 2 : relief;
+    }
+
+    /**
+     * Guaranteed bound, in blocks, on how far {@link #generatedHeight} at level of
+     * detail {@code lod} is from the rounded bilinear interpolation of the corners'
+     * {@link #flatten}ed relief, anywhere in the square lattice cell with side {@code step} and
+     * corners {@code a..d}; infinite when a river can reach the cell. Both are whole blocks, so
+     * the error is at most the bound's floor. Volcanoes are not covered: cells they reach must be
+     * sampled exactly.
+     * <p>
+     * Every column of the cell lies within step/sqrt(2) of a corner and the interpolation is a
+     * weighted mean of the corners, so it is off by at most that reach times the relief's
+     * steepest slope in the cell, plus 1.5 blocks for the real height's rounding and 0.5 for the
+     * estimate's. The
+     * slope is {@link NoiseEngine#maxSlope} carried through each layer, narrowed by what the
+     * corners allow: how close the ridge noise can come to 0 (where ridges are steepest), whether
+     * the continent value can fall into the ocean push-down, and whether the whole cell is
+     * flattened deep sea. Likewise the cell is dry when every corner's |line| beats the river
+     * width by more than the line noise can move over the reach.
+     * <p>
+     * With {@code terrain.lattice} the corners must be lattice points, where the interpolated
+     * layers equal the noise (so the lattice has to divide {@code step}), and the slope of those
+     * layers grows by {@link #LATTICE_SLOPE}.
+     */
+    double latticeError(long seed, int lod, int step, LatticeNode a, LatticeNode b, LatticeNode c, LatticeNode d) {
+        if (lattice > 0 && step % lattice != 0) return Double.POSITIVE_INFINITY;
+        double maxSlope = noise(seed).maxSlope();
+        double coarse = (lattice > 0) ? LATTICE_SLOPE : 1.0;
+        double reach = step / Math.sqrt(2.0);
+
+        // Line noise at warped positions: the warp moves them up to 220 * sqrt(2) * its slope per block
+        double warp = fbmSlope(2, 0) * maxSlope * Math.abs(riverWarpScale) * coarse;
+        double line = fbmSlope(3, 0) * maxSlope * Math.abs(riverScale) * (1.0 + 220.0 * Math.sqrt(2.0) * warp);
+        double dry = Math.min(Math.min(Math.abs(a.riverLine()), Math.abs(b.riverLine())),
+                Math.min(Math.abs(c.riverLine()), Math.abs(d.riverLine())));
+        if (dry - line * reach < riverWidth + 1e-9) return Double.POSITIVE_INFINITY;
+
+        double n = fbmSlope(4, lod) * maxSlope * Math.abs(scale);
+        double r = fbmSlope(3, lod) * maxSlope * Math.abs(scale * 0.75) * coarse;
+        double cont = fbmSlope(3, 0) * maxSlope * Math.abs(oceanScale) * 0.5 * coarse; // of the 0..1 continent value
+
+        // d(1 - |r|)^2 = 2 (1 - |r|) dr, so ridges are steepest where r crosses 0
+        double nearest = Math.min(Math.min(Math.abs(a.ridge()), Math.abs(b.ridge())),
+                Math.min(Math.abs(c.ridge()), Math.abs(d.ridge())));
+        double ridge = 1.0 - clamp01(nearest - r * reach);
+        double slope = amp * (0.80 * ((1.0 - ridgeWeight) * n + ridgeWeight * 4.0 * ridge * r) + 0.20 * 2.0 * cont);
+
+        double low = Math.min(Math.min(a.continent(), b.continent()), Math.min(c.continent(), d.continent())) - cont * reach;
+        if (low < oceanThreshold) {
+            double thr = Math.max(1e-6, oceanThreshold);
+            slope += 2.0 * (oceanThreshold - Math.max(0.0, low)) / thr * oceanDepth * cont / thr;
+        }
+
+        double top = Math.max(Math.max(a.relief(), b.relief()), Math.max(c.relief(), d.relief())) + slope * reach;
+        if (top <= seaLevel - 12) slope *= 0.5;
+        return 2.0 + slope * reach;
+    }
+
+    /**
+     * How much steeper a Catmull-Rom patch can be than the function its lattice points sample:
+     * each 1-D pass is at most twice as steep, and the other pass' weights add up to at most
+     * 1.25 in absolute value, so either partial derivative grows by up to 2.5.
+     */
+    private static final double LATTICE_SLOPE = 2.5 * Math.sqrt(2.0);
+
+    // Steepest a normalized fbm without its lod finest octaves gets, per unit of its noise's slope.
+    private static double fbmSlope(int octaves, int lod) {
+        int kept = Math.max(1, octaves - Math.max(0, lod));
+        return kept / (2.0 * (1.0 - Math.pow(0.5, octaves)));
+    }
+
+    // Share of a normalized fbm's amplitude in its lod finest octaves (at least one is kept).
+    private static double dropped(int octaves, int lod) {
+        int kept = Math.max(1, octaves - Math.max(0, lod));
+        return (Math.pow(0.5, kept) - Math.pow(0.5, octaves)) / (1.0 - Math.pow(0.5, octaves));
+    }
+
+    // Fbm without its lod finest octaves, kept on the full fbm's scale.
+    private static double fbm(NoiseEngine noise, long s, double x, double z, int octaves, int lod) {
+        int kept = Math.max(1, octaves - Math.max(0, lod));
+        double v = noise.fbm(s, x, z, kept, 2.0, 0.5);
+        return (kept == octaves) ? v : v * (1.0 - Math.pow(0.5, kept)) / (1.0 - Math.pow(0.5, octaves));
+    }
+
+    /**
+     * Continuous terrain relief at (x, z) and its slope, from analytic noise derivatives:
+     * {@code out[0]} = height before rounding, {@code out[1]} = dh/dx, {@code out[2]} = dh/dz
+     * (blocks per block). Covers mountains, ridges, continents/oceans, volcano cones and
+     * craters; river carving is a narrow band and is left out. Returns {@code out[0]}.
+     */
+    public double heightGradient(long seed, int x, int z, double[] out) {
+        long s = seed + seedSalt;
+        NoiseEngine noise = noise(seed);
+
+        noise.fbmWithDerivatives(s, x * scale, z * scale, 4, 2.0, 0.5, out);
+        double n = out[0], nx = out[1] * scale, nz = out[2] * scale;
+
+        double rs = scale * 0.75;
+        noise.fbmWithDerivatives(s + 7777L, x * rs, z * rs, 3, 2.0, 0.5, out);
+        double r = out[0], rx = out[1] * rs, rz = out[2] * rs;
+
+        noise.fbmWithDerivatives(s + 99991L, x * oceanScale, z * oceanScale, 3, 2.0, 0.5, out);
+        double c = (out[0] + 1.0) * 0.5;
+        double cx = out[1] * oceanScale * 0.5, cz = out[2] * oceanScale * 0.5;
+        if (c <= 0.0 || c >= 1.0) { c = clamp01(c); cx = 0.0; cz = 0.0; }
+
+        // ridged = (1 - |r|)^2
+        double ridged = 1.0 - Math.abs(r);
+        double dRidged = -2.0 * ridged * Math.signum(r);
+        ridged = ridged * ridged;
+
+        double mix = (1.0 - ridgeWeight) * n + ridgeWeight * (ridged * 2.0 - 1.0);
+        double mx = (1.0 - ridgeWeight) * nx + ridgeWeight * 2.0 * dRidged * rx;
+        double mz = (1.0 - ridgeWeight) * nz + ridgeWeight * 2.0 * dRidged * rz;
+        mix = mix * 0.80 + (c * 2.0 - 1.0) * 0.20;
+        mx = mx * 0.80 + cx * 0.40;
+        mz = mz * 0.80 + cz * 0.40;
+
+        double h = baseHeight + mix * amp;
+        double hx = mx * amp, hz = mz * amp;
+
+        if (c < oceanThreshold) {
+            double thr = Math.max(1e-6, oceanThreshold);
+            double t = (oceanThreshold - c) / thr;
+            h -= t * t * oceanDepth;
+            hx += 2.0 * t * oceanDepth * cx / thr;
+            hz += 2.0 * t * oceanDepth * cz / thr;
+        }
+
+        Volcano v = volcanoAt(seed, x, z);
+        if (v != null) {
+            double dx = x - v.cx(), dz = z - v.cz();
+            double d = Math.sqrt(dx * dx + dz * dz);
+            double ux = d > 0.0 ? dx / d : 0.0, uz = d > 0.0 ? dz / d : 0.0;
+
+            double t = v.factorAt(x, z);
+            if (t > 0.0) {
+                double k = 2.0 * t * volcanoHeight / Math.max(1.0, (double) v.radius());
+                h += t * t * volcanoHeight;
+                hx -= k * ux;
+                hz -= k * uz;
+
+                double ct = 1.0 - d / Math.max(1.0, (double) v.craterRadius());
+                if (ct > 0.0) {
+                    double depth = volcanoCraterRadius * 1.35;
+                    double kc = 2.0 * ct * depth / Math.max(1.0, (double) v.craterRadius());
+                    h -= ct * ct * depth;
+                    hx += kc * ux;
+                    hz += kc * uz;
+                }
+            }
+        }
+
+        double floor = seaLevel - 12;
+        if (h < floor) {
+            h = floor + (h - floor) / 2;
+            hx /= 2;
+            hz /= 2;
+        }
+
+        out[0] = h;
+        out[1] = hx;
+        out[2] = hz;
+        return h;
+    }
+
+    /**
+     * Grid form of {@link #height(long, int, int)} for the w*h block columns starting at (x0, z0),
+     * written to {@code out[j * w + i]}. Each noise layer is evaluated with one batch call.
+     */
+    public void heightGrid(long seed, int x0, int z0, int w, int h, int[] out) {
+        heightGrid(seed, x0, z0, w, h, out, null);
+    }
+
+    // When sample is non-null the grid must be the sample's 16x16 chunk; river/volcano layers and
+    // their chunk influence are recorded into it.
+    void heightGrid(long seed, int x0, int z0, int w, int h, int[] out, ColumnSample sample) {
+        heightGrid(seed, x0, z0, w, h, out, sample, lattice);
+    }
+
+    /**
+     * With {@code lattice > 0} (and w, h multiples of it) the low-frequency layers - ridges,
+     * continentalness and the river domain warp - are sampled every {@code lattice} blocks with a
+     * one-cell border and bicubically interpolated; base detail and the river lines stay per column.
+     * The volcano layer is skipped when no volcano reaches the grid (see {@link #volcanoInfluence})
+     * and river lines where the river band can't reach (see {@link #riverLines}). Without a
+     * sample, rivers are also skipped for columns too low to be carved, like the scalar call.
+     */
+    void heightGrid(long seed, int x0, int z0, int w, int h, int[] out, ColumnSample sample, int lattice) {
+        long s = seed + seedSalt;
+        NoiseEngine noise = noise(seed);
+        int n = w * h;
+
+        double[] base = new double[n];
+        double[] ridgedRaw = new double[n];
+        double[] cont = new double[n];
+        double[] wx = new double[n];
+        double[] wz = new double[n];
+        double[] river = (sample != null) ? sample.river : new double[n];
+
+        noise.fbmGrid(base, s, x0, z0, 1, w, h, scale, 4, 2.0, 0.5);
+
+        boolean coarse = lattice > 0 && w % lattice == 0 && h % lattice == 0;
+        int lw = 0, lh = 0, lx0 = 0, lz0 = 0;
+        double[] lat = null;
+        if (coarse) {
+            lw = w / lattice + 3;
+            lh = h / lattice + 3;
+            lx0 = x0 - lattice;
+            lz0 = z0 - lattice;
+            lat = new double[lw * lh];
+
+            noise.fbmGrid(lat, s + 7777L, lx0, lz0, lattice, lw, lh, scale * 0.75, 3, 2.0, 0.5);
+            upsample(lat, lw, lh, lattice, ridgedRaw, w, h);
+
+            noise.fbmGrid(lat, s + 99991L, lx0, lz0, lattice, lw, lh, oceanScale, 3, 2.0, 0.5);
+            upsample(lat, lw, lh, lattice, cont, w, h);
+            for (int k = 0; k < n; k++) cont[k] = clamp01((cont[k] + 1.0) * 0.5);
+        } else {
+            noise.fbmGrid(ridgedRaw, s + 7777L, x0, z0, 1, w, h, scale * 0.75, 3, 2.0, 0.5);
+            continentGrid(noise, s, x0, z0, w, h, cont);
+        }
+
+        // Relief first: without a sample only columns rivers can carve need the mask
+        boolean[] wet = (sample == null) ? new boolean[n] : null;
+        boolean anyWet = sample != null;
+        for (int k = 0; k < n; k++) {
+            out[k] = relief(base[k], ridgedRaw[k], cont[k]);
+            if (wet != null && out[k] > seaLevel - 2) anyWet = wet[k] = true;
+        }
+
+        boolean rivers = false;
+        if (anyWet) {
+            if (coarse) {
+                noise.fbmGrid(lat, s + 31001L, lx0, lz0, lattice, lw, lh, riverWarpScale, 2, 2.0, 0.5);
+                upsample(lat, lw, lh, lattice, wx, w, h);
+                noise.fbmGrid(lat, s + 31002L, lx0 + 1000, lz0 - 1000, lattice, lw, lh, riverWarpScale, 2, 2.0, 0.5);
+                upsample(lat, lw, lh, lattice, wz, w, h);
+            } else {
+                noise.fbmGrid(wx, s + 31001L, x0, z0, 1, w, h, riverWarpScale, 2, 2.0, 0.5);
+                noise.fbmGrid(wz, s + 31002L, x0 + 1000, z0 - 1000, 1, w, h, riverWarpScale, 2, 2.0, 0.5);
+            }
+            rivers = riverLines(noise, s, x0, z0, w, h, wx, wz, wet, river);
+        }
+
+        // One region (the usual case) means one volcano for the whole grid
+        Influence volcano = volcanoInfluence(seed, x0, z0, w, h);
+        boolean perColumn = volcano != Influence.OUTSIDE
+                && (floorDiv(x0, volcanoRegionSize) != floorDiv(x0 + w - 1, volcanoRegionSize)
+                    || floorDiv(z0, volcanoRegionSize) != floorDiv(z0 + h - 1, volcanoRegionSize));
+        Volcano v = (volcano == Influence.OUTSIDE || perColumn) ? null : volcanoAt(seed, x0, z0);
+
+        for (int j = 0; j < h; j++) {
+            for (int i = 0; i < w; i++) {
+                int k = j * w + i;
+                int x = x0 + i, z = z0 + j;
+                out[k] = shape(x, z, out[k], river[k], perColumn ? volcanoAt(seed, x, z) : v, sample, k);
+            }
+        }
+
+        if (sample != null) {
+            sample.volcanoInfluence = volcano;
+            sample.riverInfluence = rivers ? Influence.PARTIAL : Influence.OUTSIDE;
+        }
+    }
+
+    /**
+     * Volcano coverage of the w*h block square at (x0, z0): OUTSIDE when no cone or crater
+     * reaches it, INSIDE when a single volcano's cone covers all of it. A column only feels the
+     * volcano of its own region, so every region the square touches is checked.
+     */
+    Influence volcanoInfluence(long seed, int x0, int z0, int w, int h) {
+        int rx0 = floorDiv(x0, volcanoRegionSize), rx1 = floorDiv(x0 + w - 1, volcanoRegionSize);
+        int rz0 = floorDiv(z0, volcanoRegionSize), rz1 = floorDiv(z0 + h - 1, volcanoRegionSize);
+
+        Influence out = Influence.OUTSIDE;
+        for (int rz = rz0; rz <= rz1; rz++) {
+            for (int rx = rx0; rx <= rx1; rx++) {
+                Volcano v = volcanoAt(seed, rx * volcanoRegionSize, rz * volcanoRegionSize);
+                if (v == null) continue;
+                long cone = (long) v.radius() * v.radius();
+                long reach = Math.max(cone, (long) v.craterRadius() * v.craterRadius());
+                Influence in = Influence.of(v.cx(), v.cz(), cone - 1, reach, x0, z0, w, h);
+                if (in != Influence.OUTSIDE) out = (out == Influence.OUTSIDE) ? in : Influence.PARTIAL;
+            }
+        }
+        return (out == Influence.INSIDE && (rx0 != rx1 || rz0 != rz1)) ? Influence.PARTIAL : out;
+    }
+
+    // Mountains, ridges and oceans: the height before rivers and volcanoes.
+    private int relief(double n, double ridgedRaw, double cont) {
+        double ridged = 1.0 - Math.abs(ridgedRaw);
+        ridged = ridged * ridged;
+
+        double mix = (1.0 - ridgeWeight) * n + ridgeWeight * (ridged * 2.0 - 1.0);
+        mix = mix * 0.80 + (cont * 2.0 - 1.0) * 0.20;
+
+        int h = baseHeight + (int)Math.round(mix * amp);
+
+        // Oceans: push height down when continentalness is low (big connected seas)
+        if (cont < oceanThreshold) {
+            double t = (oceanThreshold - cont) / Math.max(1e-6, oceanThreshold); // 0..1
+            t = t * t; // smoother shoreline
+            h -= (int)Math.round(t * oceanDepth);
+        }
+        return h;
+    }
+
+    // Carves rivers and raises volcanoes on relief height h, giving the final natural height.
+    // v is the volcano of the column's region (or null when none can reach it).
+    private int shape(int x, int z, int h, double river, Volcano v, ColumnSample out, int i) {
+        // Rivers: carve valleys along warped ridged noise lines (connected & smooth)
+        if (out != null) out.river[i] = river;
+        if (river > 0.0) {
+            // carve more strongly above sea-level, less underwater
+            int depth = (int)Math.round(river * riverDepth);
+            if (h > seaLevel - 2) h -= depth;
+        }
+
+        // Volcanoes: rare cones + crater
+        if (v != null) {
+            double t = v.factorAt(x, z);
+            if (out != null) {
+                out.volcano[i] = t;
+                out.crater[i] = v.craterFactorAt(x, z);
+            }
+            if (t > 0.0) {
+                // cone
+                h += (int)Math.round((t * t) * volcanoHeight);
+
+                // crater bowl
+                double c = v.craterFactorAt(x, z);
+                if (c > 0.0) {
+                    h -= (int)Math.round(c * (volcanoCraterRadius * 1.35));
+                }
+            }
+        }
+
+        // Mild flattening deep below sea so oceans aren't too noisy
+        if (h < seaLevel - 12) h = (seaLevel - 12) + (h - (seaLevel - 12)) / 2;
+
+        return h;
+    }
+
+    public double temperature(long seed, int x, int z, double tScale) {
+        return noise(seed).fbm(seed + seedSalt * 101L, x * tScale, z * tScale, 3, 2.0, 0.5);
+    }
+
+    public double humidity(long seed, int x, int z, double hScale) {
+        return noise(seed).fbm(seed + seedSalt * 131L, x * hScale, z * hScale, 3, 2.0, 0.5);
+    }
+
+    public void temperatureGrid(long seed, int x0, int z0, int w, int h, double tScale, double[] out) {
+        noise(seed).fbmGrid(out, seed + seedSalt * 101L, x0, z0, 1, w, h, tScale, 3, 2.0, 0.5);
+    }
+
+    public void humidityGrid(long seed, int x0, int z0, int w, int h, double hScale, double[] out) {
+        noise(seed).fbmGrid(out, seed + seedSalt * 131L, x0, z0, 1, w, h, hScale, 3, 2.0, 0.5);
+    }
+
+    private static double clamp01(double v) {
+        return Math.max(0.0, Math.min(1.0, v));
+    }
+
+    // 0..1
+    private double continent01(NoiseEngine noise, long s, int x, int z) {
+        double c = noise.fbm(s + 99991L, x * oceanScale, z * oceanScale, 3, 2.0, 0.5);
+        return clamp01((c + 1.0) * 0.5);
+    }
+
+    private void continentGrid(NoiseEngine noise, long s, int x0, int z0, int w, int h, double[] out) {
+        noise.fbmGrid(out, s + 99991L, x0, z0, 1, w, h, oceanScale, 3, 2.0, 0.5);
+        for (int k = 0; k < w * h; k++) out[k] = clamp01((out[k] + 1.0) * 0.5);
+    }
+
+    /**
+     * Returns 0..1 where 1 is the river center line.
+     * Domain warp makes lines flow & connect instead of looking like static noise.
+     */
+    public double riverMask(long seed, int x, int z) {
+        return riverMask01(noise(seed), seed + seedSalt, x, z);
+    }
+
+    private double riverMask01(NoiseEngine noise, long s, int x, int z) {
+        double wx = noise.fbm(s + 31001L, x * riverWarpScale, z * riverWarpScale, 2, 2.0, 0.5);
+        double wz = noise.fbm(s + 31002L, (x + 1000) * riverWarpScale, (z - 1000) * riverWarpScale, 2, 2.0, 0.5);
+
+        double xw = x + wx * 220.0;
+        double zw = z + wz * 220.0;
+
+        return riverLine(noise, s, xw * riverScale, zw * riverScale);
+    }
+
+    /** Grid form of {@link #riverMask(long, int, int)}, same layout as {@link #heightGrid}. */
+    public void riverMaskGrid(long seed, int x0, int z0, int w, int h, double[] out) {
+        riverMaskGrid01(noise(seed), seed + seedSalt, x0, z0, w, h, out);
+    }
+
+    private void riverMaskGrid01(NoiseEngine noise, long s, int x0, int z0, int w, int h, double[] out) {
+        double[] wx = new double[w * h];
+        double[] wz = new double[w * h];
+        noise.fbmGrid(wx, s + 31001L, x0, z0, 1, w, h, riverWarpScale, 2, 2.0, 0.5);
+        noise.fbmGrid(wz, s + 31002L, x0 + 1000, z0 - 1000, 1, w, h, riverWarpScale, 2, 2.0, 0.5);
+        riverLines(noise, s, x0, z0, w, h, wx, wz, null, out);
+    }
+
+    /** The 3-octave line fbm is at most sum(amp * freq) / sum(amp) = 3 / 1.75 times steeper than its noise. */
+    private static final double LINE_STEEPNESS = 3.0 / 1.75;
+    private static final int RIVER_CELL = 4;
+
+    /**
+     * River mask of the grid from its warp offsets. The warped lookup is irregular, so the line
+     * noise stays per column, but it is taken in 4x4 cells: one sample in the middle of a cell's
+     * warped bounds, less the most the noise can change across them, shows whether any column
+     * can come within the river band. Cells that can't are left at 0 unevaluated (the mask is 0
+     * there anyway). With {@code wet} non-null only the columns it marks are needed; the rest
+     * are left at 0 too. Returns false when no column was evaluated.
+     */
+    private boolean riverLines(NoiseEngine noise, long s, int x0, int z0, int w, int h, double[] wx, double[] wz,
+                               boolean[] wet, double[] out) {
+        double slope = noise.maxSlope() * LINE_STEEPNESS * Math.abs(riverScale);
+        boolean any = false;
+        for (int cj = 0; cj < h; cj += RIVER_CELL) {
+            for (int ci = 0; ci < w; ci += RIVER_CELL) {
+                int ej = Math.min(h, cj + RIVER_CELL), ei = Math.min(w, ci + RIVER_CELL);
+                boolean needed = wet == null;
+                for (int j = cj; j < ej && !needed; j++) {
+                    for (int i = ci; i < ei; i++) if (wet[j * w + i]) { needed = true; break; }
+                }
+                if (!needed) {
+                    for (int j = cj; j < ej; j++) for (int i = ci; i < ei; i++) out[j * w + i] = 0.0;
+                    continue;
+                }
+
+                double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+                double minZ = Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+                for (int j = cj; j < ej; j++) {
+                    for (int i = ci; i < ei; i++) {
+                        int k = j * w + i;
+                        double xw = (x0 + i) + wx[k] * 220.0;
+                        double zw = (z0 + j) + wz[k] * 220.0;
+                        minX = Math.min(minX, xw); maxX = Math.max(maxX, xw);
+                        minZ = Math.min(minZ, zw); maxZ = Math.max(maxZ, zw);
+                    }
+                }
+                double mid = noise.fbm(s + 424242L, (minX + maxX) * 0.5 * riverScale, (minZ + maxZ) * 0.5 * riverScale, 3, 2.0, 0.5);
+                double reach = slope * 0.5 * Math.hypot(maxX - minX, maxZ - minZ);
+                boolean dry = Math.abs(mid) - reach >= riverWidth + 1e-9;
+
+                for (int j = cj; j < ej; j++) {
+                    for (int i = ci; i < ei; i++) {
+                        int k = j * w + i;
+                        if (dry || (wet != null && !wet[k])) { out[k] = 0.0; continue; }
+                        double xw = (x0 + i) + wx[k] * 220.0;
+                        double zw = (z0 + j) + wz[k] * 220.0;
+                        out[k] = riverLine(noise, s, xw * riverScale, zw * riverScale);
+                    }
+                }
+                any |= !dry;
+            }
+        }
+        return any;
+    }
+
+    /**
+     * River mask from the line noise at warped (x, z): the 3-octave fbm, summed coarse to fine
+     * exactly as {@link NoiseEngine#fbm} does, but giving up with 0 as soon as the octaves left
+     * (|noise| never exceeds {@link NoiseEngine#maxValue}) can't bring it back into the river band.
+     */
+    private double riverLine(NoiseEngine noise, long s, double x, double z) {
+        double sum = 0.0, amp = 1.0, freq = 1.0;
+        double max = noise.maxValue();
+        for (int o = 0; o < 3; o++) {
+            sum += noise.noise(s + 424242L + o * 1013L, x * freq, z * freq) * amp;
+            amp *= 0.5;
+            freq *= 2.0;
+            double left = (2.0 * amp - 0.25) * max; // amplitude of the octaves still to come
+            if (left > 0.0 && (Math.abs(sum) - left) / 1.75 >= riverWidth + 1e-9) return 0.0;
+        }
+        return riverShape(sum / 1.75);
+    }
+
+    private double riverShape(double r) {
+        r = Math.abs(r);                  // 0..1-ish
+        double line = 1.0 - clamp01(r);   // high near 0-crossings
+
+        // Width shaping: only keep the center band
+        double w = riverWidth;
+        double t = (line - (1.0 - w)) / Math.max(1e-6, w);
+        t = clamp01(t);
+
+        // smoothstep
+        return t * t * (3.0 - 2.0 * t);
+    }
+
+    public int volcanoLavaLevel() { return volcanoLavaLevel; }
+
+    public CacheStats volcanoCacheStats() { return volcanoes.stats("volcanoes"); }
+
+    public record Volcano(int cx, int cz, int radius, int craterRadius) {
+        double factorAt(int x, int z) {
+            double dx = x - cx;
+            double dz = z - cz;
+            double d = Math.sqrt(dx * dx + dz * dz);
+            double t = 1.0 - (d / Math.max(1.0, (double) radius));
+            return clamp01(t);
+        }
+
+        double craterFactorAt(int x, int z) {
+            double dx = x - cx;
+            double dz = z - cz;
+            double d = Math.sqrt(dx * dx + dz * dz);
+            double t = 1.0 - (d / Math.max(1.0, (double) craterRadius));
+            t = clamp01(t);
+            return t * t;
+        }
+    }
+
+    public Volcano volcanoAt(long seed, int x, int z) {
+        int rx = floorDiv(x, volcanoRegionSize);
+        int rz = floorDiv(z, volcanoRegionSize);
+        RegionCache.Entry<Volcano> e = volcanoes.lookup(seed, rx, rz);
+        if (e != null) return e.value();
+        return volcanoes.store(seed, rx, rz, resolveVolcano(seed, rx, rz));
+    }
+
+    private Volcano resolveVolcano(long seed, int rx, int rz) {
+        long h = mix(seed, rx, rz, seedSalt ^ 0xBADC0FF);
+        TerraRandom r = new TerraRandom(randomMode, h);
+
+        if (r.nextDouble() > volcanoChance) return null;
+
+        int ox = rx * volcanoRegionSize;
+        int oz = rz * volcanoRegionSize;
+
+        int cx = ox + volcanoRegionSize / 2 + r.nextInt(Math.max(1, volcanoRegionSize / 3)) - (volcanoRegionSize / 6);
+        int cz = oz + volcanoRegionSize / 2 + r.nextInt(Math.max(1, volcanoRegionSize / 3)) - (volcanoRegionSize / 6);
+
+        return new Volcano(cx, cz, volcanoRadius, volcanoCraterRadius);
+    }
+
+    /**
+     * Catmull-Rom upsampling of a lattice (spacing {@code step}, one extra cell on every side)
+     * to the w*h block grid it covers.
+     */
+    private static void upsample(double[] lat, int lw, int lh, int step, double[] out, int w, int h) {
+        // Interpolate along x for every lattice row first, then along z.
+        double[] rows = new double[lh * w];
+        for (int r = 0; r < lh; r++) {
+            int o = r * lw;
+            for (int i = 0; i < w; i++) {
+                int g = i / step + 1;
+                double t = (i % step) / (double) step;
+                rows[r * w + i] = cubic(lat[o + g - 1], lat[o + g], lat[o + g + 1], lat[o + g + 2], t);
+            }
+        }
+        for (int j = 0; j < h; j++) {
+            int g = j / step + 1;
+            double t = (j % step) / (double) step;
+            for (int i = 0; i < w; i++) {
+                out[j * w + i] = cubic(rows[(g - 1) * w + i], rows[g * w + i], rows[(g + 1) * w + i], rows[(g + 2) * w + i], t);
+            }
+        }
+    }
+
+    private static double cubic(double p0, double p1, double p2, double p3, double t) {
+        return p1 + 0.5 * t * (p2 - p0 + t * (2.0 * p0 - 5.0 * p1 + 4.0 * p2 - p3 + t * (3.0 * (p1 - p2) + p3 - p0)));
+    }
+
+    private static int floorDiv(int a, int b) {
+        int r = a / b;
+        if ((a ^ b) < 0 && (r * b != a)) r--;
+        return r;
+    }
+
+    private static long mix(long seed, int x, int z, int salt) {
+        return CoordHash.mix(seed ^ (long)salt, x, z);
+    }
+
+}
@@ -0,0 +1,170 @@
+package me.mcp.terracity.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The built-in tree shapes as {@link BlockTemplate}s, relative to the trunk base (0, 0, 0).
+ * Each shape/parameter combination is compiled on first use and shared afterwards.
+ */
+public final class TreeTemplates {
+    private TreeTemplates(){}
+
+    /** Distinct trunk-lean patterns per palm size, and vine layouts per swamp tree size. */
+    public static final int PALM_VARIANTS = 8;
+    public static final int VINE_VARIANTS = 8;
+
+    private static final TerraBlock OAK_LOG = TerraBlock.of("OAK_LOG");
+    private static final TerraBlock OAK_LEAVES = TerraBlock.of("OAK_LEAVES");
+    private static final TerraBlock BIRCH_LOG = TerraBlock.of("BIRCH_LOG");
+    private static final TerraBlock BIRCH_LEAVES = TerraBlock.of("BIRCH_LEAVES");
+    private static final TerraBlock SPRUCE_LOG = TerraBlock.of("SPRUCE_LOG");
+    private static final TerraBlock SPRUCE_LEAVES = TerraBlock.of("SPRUCE_LEAVES");
+    private static final TerraBlock JUNGLE_LOG = TerraBlock.of("JUNGLE_LOG");
+    private static final TerraBlock JUNGLE_LEAVES = TerraBlock.of("JUNGLE_LEAVES");
+    private static final TerraBlock VINE = TerraBlock.of("VINE");
+    private static final TerraBlock MUSHROOM_STEM = TerraBlock.of("MUSHROOM_STEM");
+    private static final TerraBlock RED_MUSHROOM_BLOCK = TerraBlock.of("RED_MUSHROOM_BLOCK");
+    private static final TerraBlock BROWN_MUSHROOM_BLOCK = TerraBlock.of("BROWN_MUSHROOM_BLOCK");
+
+    private static final ConcurrentHashMap<Integer, BlockTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private static int key(int shape, int a, int b, int c) {
+        return (shape << 24) | (a << 16) | (b << 8) | c;
+    }
+
+    public static BlockTemplate oak(int h) {
+        return CACHE.computeIfAbsent(key(1, h, 0, 0), k -> {
+            BlockTemplate.Builder t = new BlockTemplate.Builder("oak-" + h);
+            column(t, OAK_LOG, h);
+            blob(t, h, 2, OAK_LEAVES);
+            blob(t, h - 1, 3, OAK_LEAVES);
+            blob(t, h + 1, 1, OAK_LEAVES);
+            return t.build();
+        });
+    }
+
+    public static BlockTemplate birch(int h) {
+        return CACHE.computeIfAbsent(key(2, h, 0, 0), k -> {
+            BlockTemplate.Builder t = new BlockTemplate.Builder("birch-" + h);
+            column(t, BIRCH_LOG, h);
+            blob(t, h, 2, BIRCH_LEAVES);
+            blob(t, h - 1, 2, BIRCH_LEAVES);
+            blob(t, h + 1, 1, BIRCH_LEAVES);
+            return t.build();
+        });
+    }
+
+    public static BlockTemplate pine(int h, int layers) {
+        return CACHE.computeIfAbsent(key(3, h, layers, 0), k -> {
+            BlockTemplate.Builder t = new BlockTemplate.Builder("pine-" + h + "-" + layers);
+            column(t, SPRUCE_LOG, h);
+            for (int i = 0; i < layers; i++) {
+                disc(t, h - i, Math.max(1, 3 - (i / 2)), SPRUCE_LEAVES);
+            }
+            disc(t, h + 1, 1, SPRUCE_LEAVES);
+            return t.build();
+        });
+    }
+
+    /** Palm leaning towards (dx, dz); {@code variant} picks where along the trunk it bends. */
+    public static BlockTemplate palm(int h, int dx, int dz, int variant) {
+        return CACHE.computeIfAbsent(key(4, h, (dx + 1) * 3 + (dz + 1), variant), k -> {
+            BlockTemplate.Builder t = new BlockTemplate.Builder("palm-" + h + "-" + dx + "," + dz + "-" + variant);
+            TerraRandom r = new TerraRandom(TerraRandom.Mode.FAST, TerraRandom.mix64(k));
+
+            int cx = 0, cz = 0;
+            for (int i = 0; i < h; i++) {
+                t.set(cx, i, cz, JUNGLE_LOG);
+                if (i > 2 && r.nextDouble() < 0.35) { cx += dx; cz += dz; }
+            }
+
+            // fan of leaves on top, then four fronds
+            for (int a = 0; a < 6; a++) leaf(t, cx + (a % 3) - 1, h, cz + (a / 3) - 1, JUNGLE_LEAVES);
+            line(t, cx, h, cz,  3, 0, JUNGLE_LEAVES);
+            line(t, cx, h, cz, -3, 0, JUNGLE_LEAVES);
+            line(t, cx, h, cz,  0, 3, JUNGLE_LEAVES);
+            line(t, cx, h, cz,  0,-3, JUNGLE_LEAVES);
+            return t.build();
+        });
+    }
+
+    /** Swamp oak; {@code vines} 0 means none, 1..{@link #VINE_VARIANTS} picks a vine layout. */
+    public static BlockTemplate swamp(int h, int vines) {
+        return CACHE.computeIfAbsent(key(5, h, vines, 0), k -> {
+            BlockTemplate.Builder t = new BlockTemplate.Builder("swamp-" + h + "-" + vines);
+            column(t, OAK_LOG, h);
+            blob(t, h, 3, OAK_LEAVES);
+            blob(t, h - 1, 3, OAK_LEAVES);
+
+            if (vines > 0) {
+                TerraRandom r = new TerraRandom(TerraRandom.Mode.FAST, TerraRandom.mix64(k));
+                for (int i = 0; i < 6; i++) {
+                    int vx = r.nextInt(5) - 2;
+                    int vz = r.nextInt(5) - 2;
+                    int vy = h - r.nextInt(2);
+                    for (int d = 0; d < 4; d++) t.setIfEmpty(vx, vy - d, vz, VINE);
+                }
+            }
+            return t.build();
+        });
+    }
+
+    public static BlockTemplate mushroom(int h, int capR, boolean red) {
+        return CACHE.computeIfAbsent(key(6, h, capR, red ? 1 : 0), k -> {
+            BlockTemplate.Builder t = new BlockTemplate.Builder((red ? "red" : "brown") + "-mushroom-" + h + "-" + capR);
+            column(t, MUSHROOM_STEM, h);
+
+            TerraBlock cap = red ? RED_MUSHROOM_BLOCK : BROWN_MUSHROOM_BLOCK;
+            for (int dx = -capR; dx <= capR; dx++) {
+                for (int dz = -capR; dz <= capR; dz++) {
+                    int ad = Math.abs(dx) + Math.abs(dz);
+                    if (ad > capR + 1) continue;
+                    leaf(t, dx, h, dz, cap);
+                    if (ad <= capR - 1) leaf(t, dx, h + 1, dz, cap);
+                }
+            }
+            return t.build();
+        });
+    }
+
+    private static void column(BlockTemplate.Builder t, TerraBlock log, int h) {
+        for (int i = 0; i < h; i++) t.set(0, i, 0, log);
+    }
+
+    // Leaves only go where nothing was placed yet, so they never cut through the trunk.
+    private static void leaf(BlockTemplate.Builder t, int x, int y, int z, TerraBlock leaves) {
+        t.setIfEmpty(x, y, z, leaves);
+    }
+
+    private static void blob(BlockTemplate.Builder t, int y, int r, TerraBlock leaves) {
+        for (int dx = -r; dx <= r; dx++) {
+            for (int dz = -r; dz <= r; dz++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    double d = Math.sqrt(dx*dx + dz*dz) + Math.abs(dy)*0.6;
+                    if (d <= r + 0.15) leaf(t, dx, y + dy, dz, leaves);
+                }
+            }
+        }
+    }
+
+    private static void disc(BlockTemplate.Builder t, int y, int r, TerraBlock leaves) {
+        for (int dx = -r; dx <= r; dx++) {
+            for (int dz = -r; dz <= r; dz++) {
+                if (dx*dx + dz*dz <= r*r) leaf(t, dx, y, dz, leaves);
+            }
+        }
+    }
+
+    private static void line(BlockTemplate.Builder t, int x, int y, int z, int dx, int dz, TerraBlock leaves) {
+        int steps = Math.max(Math.abs(dx), Math.abs(dz));
+        int sx = Integer.compare(dx, 0);
+        int sz = Integer.compare(dz, 0);
+        int cx = x, cz = z;
+        for (int i = 0; i < steps; i++) {
+            cx += sx;
+            cz += sz;
+            leaf(t, cx, y, cz, leaves);
+            if (i > 1) leaf(t, cx, y - 1, cz, leaves);
+        }
+    }
+}